@@ -0,0 +1,27 @@
+package br.com.beatrizcarmo.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Ponto de entrada do benchmarks.jar: aceita as mesmas opções do org.openjdk.jmh.Main, mas sempre mede a
+// alocação com o profiler de GC e, se -rf/-rff não forem passados, grava o resultado em jmh-result.json
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+		if (!commandLine.getResultFormat().hasValue() && !commandLine.getResult().hasValue())
+			options.resultFormat(ResultFormatType.JSON).result("jmh-result.json");
+
+		new Runner(options.build()).run();
+	}
+}
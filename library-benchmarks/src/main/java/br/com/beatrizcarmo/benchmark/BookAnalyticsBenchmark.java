@@ -0,0 +1,102 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.service.impl.BookServiceImpl;
+
+// Análises em memória do BookServiceImpl sobre listas de 10^3 a 10^7 livros, com proporções diferentes de
+// livros emprestados. Os métodos não usam os beans injetados, então o serviço é criado sem o Spring.
+//
+//   mvn -B package && java -jar library-benchmarks/target/benchmarks.jar
+//
+// O BenchmarkMain já liga o profiler de GC (alocação em gc.alloc.rate.norm, bytes por operação) e grava o
+// resultado em jmh-result.json para comparar com a próxima otimização. Filtros e parâmetros do JMH continuam
+// valendo, por exemplo: java -jar benchmarks.jar BookAnalyticsBenchmark.getMaxBooksCost -p size=1000000
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class BookAnalyticsBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "0.1", "0.5", "0.9" })
+	public double borrowedRatio;
+
+	private BookServiceImpl service;
+	private List<Book> books;
+	private User user;
+	private String name;
+	private String author;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		service = new BookServiceImpl();
+		List<User> users = BookFixtures.users();
+		books = BookFixtures.books(size, borrowedRatio, users);
+		user = users.get(0);
+		// Cópias, para que a comparação não seja resolvida pela igualdade de referência das strings
+		name = new String(BookFixtures.name(7));
+		author = new String(BookFixtures.author(7));
+	}
+
+	@Benchmark
+	public Long countNumberOfBorrowedBooks() {
+		return service.countNumberOfBorrowedBooks(books);
+	}
+
+	@Benchmark
+	public Double calculateTotalCostOfBooks() {
+		return service.calculateTotalCostOfBooks(books);
+	}
+
+	@Benchmark
+	public Double getMaxBooksCost() {
+		return service.getMaxBooksCost(books);
+	}
+
+	@Benchmark
+	public List<User> getUsersResponsibleForBorrowed() {
+		return service.getUsersResponsibleForBorrowed(books);
+	}
+
+	@Benchmark
+	public Long getNumberOfBooksRentedByUser() {
+		return service.getNumberOfBooksRentedByUser(books, user);
+	}
+
+	@Benchmark
+	public List<BookDto> getBooksSameAuthorAndName() {
+		return service.getBooksSameAuthorAndName(books, name, author);
+	}
+
+	@Benchmark
+	public List<BookDto> getBooksSameName() {
+		return service.getBooksSameName(books, name);
+	}
+
+	@Benchmark
+	public List<BookDto> getBooksSameAuthor() {
+		return service.getBooksSameAuthor(books, author);
+	}
+}
@@ -0,0 +1,67 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.service.impl.BookServiceImpl;
+import br.com.beatrizcarmo.utils.BookCostSummary;
+import br.com.beatrizcarmo.utils.BookCostSummary.Filter;
+
+// Agregação dos custos em uma passada pelo BookCostSummary, reaproveitando o mesmo objeto, contra os métodos
+// com retorno em objeto do BookServiceImpl. O gc.alloc.rate.norm de summarize* não deve crescer com o size
+// (~0 bytes por livro); nos métodos antigos sobra só o Double/Long do retorno.
+//
+//   java -jar library-benchmarks/target/benchmarks.jar BookCostSummaryBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BookCostSummaryBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private BookServiceImpl service;
+	private List<Book> books;
+	private BookCostSummary summary;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		service = new BookServiceImpl();
+		books = BookFixtures.books(size, 0.5, BookFixtures.users());
+		summary = new BookCostSummary();
+	}
+
+	@Benchmark
+	public double summarizeAll() {
+		return service.summarizeCosts(books, Filter.ALL, summary).getSum();
+	}
+
+	@Benchmark
+	public double summarizeBorrowed() {
+		return service.summarizeCosts(books, Filter.BORROWED, summary).getAverage();
+	}
+
+	// Soma, máximo e contagem de emprestados pelos três métodos antigos: três passadas pela lista
+	@Benchmark
+	public double boxedWrappers() {
+		return service.calculateTotalCostOfBooks(books) + service.getMaxBooksCost(books)
+				+ service.countNumberOfBorrowedBooks(books);
+	}
+}
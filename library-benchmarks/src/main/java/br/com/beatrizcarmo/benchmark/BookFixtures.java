@@ -0,0 +1,75 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.User;
+
+// Gera listas de livros sempre iguais para a mesma semente, para que as rodadas sejam comparáveis entre si.
+// Os nomes, autores e usuários vêm de conjuntos pequenos e são compartilhados pelos livros, como aconteceria
+// com os dados vindos do banco, então o custo de memória é basicamente o dos objetos Book.
+public final class BookFixtures {
+
+	public static final long SEED = 42L;
+	public static final int DISTINCT_NAMES = 1000;
+	public static final int DISTINCT_AUTHORS = 100;
+	public static final int DISTINCT_USERS = 1000;
+
+	private BookFixtures() {
+	}
+
+	public static String name(int index) {
+		return "Livro " + index;
+	}
+
+	public static String author(int index) {
+		return "Autor " + index;
+	}
+
+	public static List<User> users() {
+		List<User> users = new ArrayList<>(DISTINCT_USERS);
+		for (int i = 0; i < DISTINCT_USERS; i++) {
+			User user = new User("Usuário " + i, "usuario" + i, "senha", false);
+			user.setId(new UUID(0L, i));
+			users.add(user);
+		}
+		return users;
+	}
+
+	// Todos os livros têm usuário (o último a pegá-lo emprestado): getNumberOfBooksRentedByUser não aceita livro
+	// sem usuário. Só os emprestados, na proporção borrowedRatio, têm data de devolução.
+	public static List<Book> books(int size, double borrowedRatio, List<User> users) {
+		Random random = new Random(SEED);
+		String[] names = new String[DISTINCT_NAMES];
+		for (int i = 0; i < names.length; i++)
+			names[i] = name(i);
+		String[] authors = new String[DISTINCT_AUTHORS];
+		for (int i = 0; i < authors.length; i++)
+			authors[i] = author(i);
+		LocalDate today = LocalDate.now();
+
+		List<Book> books = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Book book = new Book();
+			book.setId(new UUID(random.nextLong(), random.nextLong()));
+			book.setName(names[random.nextInt(names.length)]);
+			book.setAuthor(authors[random.nextInt(authors.length)]);
+			book.setDescription("Descrição");
+			book.setCost(1 + random.nextInt(20000) / 100f);
+			book.setYearEdition(today.minusDays(random.nextInt(365 * 50)));
+			book.setUser(users.get(random.nextInt(users.size())));
+
+			boolean isBorrowed = random.nextDouble() < borrowedRatio;
+			book.setIsBorrowed(isBorrowed);
+			if (isBorrowed)
+				book.setDevolutionDate(today.plusDays(random.nextInt(60) - 30));
+
+			books.add(book);
+		}
+		return books;
+	}
+}
@@ -0,0 +1,88 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.service.impl.BookServiceImpl;
+
+// As mesmas agregações do BookAnalyticsBenchmark (soma, máximo e contagem de emprestados), feitas sobre a lista
+// de entidades pelo BookServiceImpl e sobre a cópia em colunas do CatalogSnapshot. No snapshot o
+// gc.alloc.rate.norm deve ficar em ~0 bytes por operação.
+//
+//   java -jar library-benchmarks/target/benchmarks.jar CatalogSnapshotBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class CatalogSnapshotBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private BookServiceImpl service;
+	private List<Book> books;
+	private CatalogSnapshot snapshot;
+	private String author;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		service = new BookServiceImpl();
+		books = BookFixtures.books(size, 0.5, BookFixtures.users());
+		snapshot = new CatalogSnapshot();
+		snapshot.put(books);
+		// Cópia, para a busca no dicionário comparar o conteúdo e não a referência
+		author = new String(BookFixtures.author(7));
+	}
+
+	@Benchmark
+	public Double listTotalCost() {
+		return service.calculateTotalCostOfBooks(books);
+	}
+
+	@Benchmark
+	public double snapshotTotalCost() {
+		return snapshot.totalCost();
+	}
+
+	@Benchmark
+	public Double listMaxCost() {
+		return service.getMaxBooksCost(books);
+	}
+
+	@Benchmark
+	public float snapshotMaxCost() {
+		return snapshot.maxCost();
+	}
+
+	@Benchmark
+	public Long listCountBorrowed() {
+		return service.countNumberOfBorrowedBooks(books);
+	}
+
+	@Benchmark
+	public int snapshotCountBorrowed() {
+		return snapshot.countBorrowed();
+	}
+
+	@Benchmark
+	public int snapshotCountByAuthor() {
+		return snapshot.countByAuthor(author);
+	}
+}
@@ -0,0 +1,222 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.LibraryDto;
+import br.com.beatrizcarmo.dto.UserDto;
+import br.com.beatrizcarmo.dto.mapper.BookMapper;
+import br.com.beatrizcarmo.dto.mapper.LibraryMapper;
+import br.com.beatrizcarmo.dto.mapper.UserMapper;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+
+// toDto/toEntity dos mappers e a escrita do JSON das listas. Com size=1 o gc.alloc.rate.norm é a alocação por
+// objeto; nos outros tamanhos divida pelo size.
+//
+//   java -jar library-benchmarks/target/benchmarks.jar MapperBenchmark
+//
+// naiveBookToDtoList repete o toDto(List) anterior (ArrayList sem tamanho e um UUID.toString por associação)
+// para comparar com o atual na mesma rodada. Os repositórios usados pelo toEntity são substituídos por proxies
+// que devolvem objetos já em memória, então o custo medido é só o do mapeamento.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class MapperBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	public int size;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+	private BookMapper bookMapper;
+	private UserMapper userMapper;
+	private LibraryMapper libraryMapper;
+
+	private List<Book> books;
+	private List<BookDto> bookDtos;
+	private List<User> users;
+	private List<UserDto> userDtos;
+	private List<Library> libraries;
+	private List<LibraryDto> libraryDtos;
+
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		List<User> allUsers = BookFixtures.users();
+		List<Library> allLibraries = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			allLibraries.add(new Library(new UUID(1L, i), "Biblioteca " + i, "biblioteca" + i, "senha", "Rua " + i, i));
+
+		books = BookFixtures.books(size, 0.5, allUsers);
+		for (int i = 0; i < books.size(); i++)
+			books.get(i).setLibrary(allLibraries.get(i % allLibraries.size()));
+
+		users = allUsers.subList(0, Math.min(size, allUsers.size()));
+		libraries = new ArrayList<>();
+		for (int i = 0; i < size; i++)
+			libraries.add(allLibraries.get(i % allLibraries.size()));
+
+		userMapper = new UserMapper();
+		libraryMapper = new LibraryMapper();
+		bookMapper = new BookMapper();
+		inject(bookMapper, "libraryRepository", repository(LibraryRepository.class, allLibraries, Library::getId));
+		inject(bookMapper, "userRepository", repository(UserRepository.class, allUsers, User::getId));
+
+		bookDtos = bookMapper.toDto(books);
+		userDtos = userMapper.toDto(users);
+		libraryDtos = libraryMapper.toDto(libraries);
+	}
+
+	@Benchmark
+	public List<BookDto> bookToDtoList() {
+		return bookMapper.toDto(books);
+	}
+
+	@Benchmark
+	public List<BookDto> naiveBookToDtoList() {
+		List<BookDto> dtos = new ArrayList<>();
+		for (Book book : books) {
+			BookDto dto = new BookDto();
+			dto.id = book.getId().toString();
+			dto.name = book.getName();
+			dto.description = book.getDescription();
+			dto.author = book.getAuthor();
+			dto.cost = book.getCost();
+			dto.yearEdition = book.getYearEdition();
+			dto.publisher = book.getPublisher();
+			dto.isBorrowed = book.getIsBorrowed();
+			if (book.getLibrary() != null)
+				dto.idLibrary = book.getLibrary().getId().toString();
+			if (book.getUser() != null)
+				dto.idUser = book.getUser().getId().toString();
+			dtos.add(dto);
+		}
+		return dtos;
+	}
+
+	@Benchmark
+	public List<Book> bookToEntities() {
+		return bookMapper.toEntities(bookDtos);
+	}
+
+	@Benchmark
+	public List<Book> bookToEntity() {
+		List<Book> entities = new ArrayList<>(bookDtos.size());
+		for (BookDto dto : bookDtos)
+			entities.add(bookMapper.toEntity(dto));
+		return entities;
+	}
+
+	@Benchmark
+	public List<UserDto> userToDtoList() {
+		return userMapper.toDto(users);
+	}
+
+	@Benchmark
+	public List<User> userToEntity() {
+		List<User> entities = new ArrayList<>(userDtos.size());
+		for (UserDto dto : userDtos)
+			entities.add(userMapper.toEntity(dto));
+		return entities;
+	}
+
+	@Benchmark
+	public List<LibraryDto> libraryToDtoList() {
+		return libraryMapper.toDto(libraries);
+	}
+
+	@Benchmark
+	public List<Library> libraryToEntity() {
+		List<Library> entities = new ArrayList<>(libraryDtos.size());
+		for (LibraryDto dto : libraryDtos)
+			entities.add(libraryMapper.toEntity(dto));
+		return entities;
+	}
+
+	// Como o controller responde hoje: lista de DTOs serializada por reflexão
+	@Benchmark
+	public void writeBooksJsonFromDtos() throws IOException {
+		objectMapper.writeValue(OutputStream.nullOutputStream(), bookMapper.toDto(books));
+	}
+
+	@Benchmark
+	public void writeBooksJsonStreaming() throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+			bookMapper.writeTo(books, generator);
+		}
+	}
+
+	@Benchmark
+	public void writeUsersJsonStreaming() throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+			userMapper.writeTo(users, generator);
+		}
+	}
+
+	@Benchmark
+	public void writeLibrariesJsonStreaming() throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+			libraryMapper.writeTo(libraries, generator);
+		}
+	}
+
+	// getOne e findAllById respondem com os objetos em memória; os outros métodos não são usados pelos mappers
+	@SuppressWarnings("unchecked")
+	private static <R, T> R repository(Class<R> type, List<T> values, Function<T, UUID> id) {
+		Map<UUID, T> byId = values.stream().collect(Collectors.toMap(id, Function.identity()));
+		return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getOne":
+				return byId.get(args[0]);
+			case "findAllById":
+				List<T> found = new ArrayList<>();
+				for (Object key : (Iterable<?>) args[0])
+					found.add(byId.get(key));
+				return found;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private static void inject(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+}
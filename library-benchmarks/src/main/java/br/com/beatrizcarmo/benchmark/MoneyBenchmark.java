@@ -0,0 +1,98 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.beatrizcarmo.utils.MathCalculator;
+
+// Desconto percentual e soma de preços em centavos (long) pelo MathCalculator contra as mesmas contas em
+// BigDecimal com 2 casas. Os dois lados dão o mesmo resultado (conferido no setUp); no MathCalculator o
+// gc.alloc.rate.norm deve ficar em ~0 bytes por operação.
+//
+//   java -jar library-benchmarks/target/benchmarks.jar MoneyBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2)
+public class MoneyBenchmark {
+
+	private static final BigDecimal BASIS_POINTS_PER_UNIT = BigDecimal.valueOf(MathCalculator.BASIS_POINTS_PER_UNIT);
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	private long[] cents;
+	private long[] basisPoints;
+	private BigDecimal[] amounts;
+	private BigDecimal[] remainingBasisPoints;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		cents = new long[size];
+		basisPoints = new long[size];
+		amounts = new BigDecimal[size];
+		remainingBasisPoints = new BigDecimal[size];
+
+		for (int i = 0; i < size; i++) {
+			cents[i] = 100 + random.nextInt(1_000_000);
+			basisPoints[i] = random.nextInt(5_000);
+			amounts[i] = BigDecimal.valueOf(cents[i], 2);
+			remainingBasisPoints[i] = BigDecimal.valueOf(MathCalculator.BASIS_POINTS_PER_UNIT - basisPoints[i]);
+		}
+
+		if (BigDecimal.valueOf(fixedPointDiscount(), 2).compareTo(bigDecimalDiscount()) != 0)
+			throw new IllegalStateException("MathCalculator e BigDecimal deram resultados diferentes");
+	}
+
+	@Benchmark
+	public long fixedPointDiscount() {
+		long total = 0;
+		for (int i = 0; i < size; i++)
+			total = MathCalculator.addMoney(total,
+					MathCalculator.applyDiscount(cents[i], basisPoints[i], RoundingMode.HALF_UP));
+		return total;
+	}
+
+	@Benchmark
+	public BigDecimal bigDecimalDiscount() {
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < size; i++)
+			total = total.add(amounts[i].multiply(remainingBasisPoints[i]).divide(BASIS_POINTS_PER_UNIT, 2,
+					RoundingMode.HALF_UP));
+		return total;
+	}
+
+	@Benchmark
+	public long fixedPointSum() {
+		long total = 0;
+		for (int i = 0; i < size; i++)
+			total = MathCalculator.addMoney(total, cents[i]);
+		return total;
+	}
+
+	@Benchmark
+	public BigDecimal bigDecimalSum() {
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i < size; i++)
+			total = total.add(amounts[i]);
+		return total;
+	}
+}
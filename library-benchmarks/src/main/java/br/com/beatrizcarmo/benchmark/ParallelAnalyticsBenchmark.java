@@ -0,0 +1,92 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.service.impl.BookServiceImpl;
+
+// Versões sequenciais e fork/join das análises do BookServiceImpl, com pools de 1 a 16 threads. O speedup de
+// cada método é o tempo sequencial dividido pelo paralelo com o mesmo size; com mais threads que núcleos o
+// tempo para de cair, então rode em uma máquina com pelo menos tantos núcleos quanto o maior parallelism.
+//
+//   java -jar library-benchmarks/target/benchmarks.jar ParallelAnalyticsBenchmark -p size=1000000
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class ParallelAnalyticsBenchmark {
+
+	@Param({ "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "1", "2", "4", "8", "16" })
+	public int parallelism;
+
+	private BookServiceImpl service;
+	private ForkJoinPool pool;
+	private List<Book> books;
+	private String author;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		service = new BookServiceImpl();
+		pool = new ForkJoinPool(parallelism);
+		books = BookFixtures.books(size, 0.5, BookFixtures.users());
+		author = new String(BookFixtures.author(7));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public List<User> getUsersResponsibleForBorrowed() {
+		return service.getUsersResponsibleForBorrowed(books);
+	}
+
+	@Benchmark
+	public List<User> getUsersResponsibleForBorrowedParallel() {
+		return service.getUsersResponsibleForBorrowedParallel(books, pool);
+	}
+
+	@Benchmark
+	public List<BookDto> getBooksSameAuthor() {
+		return service.getBooksSameAuthor(books, author);
+	}
+
+	@Benchmark
+	public List<BookDto> getBooksSameAuthorParallel() {
+		return service.getBooksSameAuthorParallel(books, author, pool);
+	}
+
+	@Benchmark
+	public Double calculateTotalCostOfBooks() {
+		return service.calculateTotalCostOfBooks(books);
+	}
+
+	@Benchmark
+	public Double calculateTotalCostOfBooksParallel() {
+		return service.calculateTotalCostOfBooksParallel(books, pool);
+	}
+}
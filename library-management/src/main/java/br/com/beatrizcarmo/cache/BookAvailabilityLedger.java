@@ -0,0 +1,142 @@
+package br.com.beatrizcarmo.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.repository.projection.BookAvailability;
+
+// Estado de empréstimo dos livros e usuários punidos em memória, para responder sem ir ao banco.
+// As transições são compare-and-set no ConcurrentHashMap (que trava só o bin da chave), então dois
+// empréstimos do mesmo livro não conseguem reservá-lo ao mesmo tempo. O banco continua sendo a fonte
+// da verdade: quando uma gravação falha, o estado do livro é relido com reconcile.
+@Component
+public class BookAvailabilityLedger implements SmartLifecycle {
+
+	// Mesma fase do UserLoanCounter: carrega antes de o servidor web aceitar requisições
+	private static final int PHASE = 0;
+
+	public enum Availability {
+		AVAILABLE, RESERVED, BORROWED
+	}
+
+	private final ConcurrentMap<UUID, Availability> books = new ConcurrentHashMap<>();
+	private final Set<UUID> punishedUsers = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private volatile boolean running;
+
+	@Override
+	public void start() {
+		load();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	// Roda na subida do contexto, antes do servidor web, então nenhuma liberação ou exclusão feita por requisição
+	// é sobrescrita pela linha antiga lida no cursor. Não sobrescreve o que já foi registrado por outra carga
+	public void load() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try (Stream<BookAvailability> availability = bookRepository.streamAvailability()) {
+				availability.forEach(book -> {
+					if (book.getIsBorrowed() != null)
+						books.putIfAbsent(book.getId(), toAvailability(book.getIsBorrowed()));
+				});
+			}
+		});
+		punishedUsers.addAll(userRepository.findPunishedUserIds());
+	}
+
+	// null quando o livro não está no ledger e é preciso consultar o banco
+	public Boolean isBorrowed(UUID bookId) {
+		Availability availability = books.get(bookId);
+		return availability == null ? null : availability != Availability.AVAILABLE;
+	}
+
+	public Availability getAvailability(UUID bookId) {
+		return books.get(bookId);
+	}
+
+	// Um livro desconhecido também é reservado; quem decide se ele existe e está livre é a gravação no banco
+	public boolean tryReserve(UUID bookId) {
+		Availability previous = books.putIfAbsent(bookId, Availability.RESERVED);
+		return previous == null || books.replace(bookId, Availability.AVAILABLE, Availability.RESERVED);
+	}
+
+	public void confirm(UUID bookId) {
+		books.replace(bookId, Availability.RESERVED, Availability.BORROWED);
+	}
+
+	// Volta para o estado gravado no banco (null quando o livro não existe ou não tem o atributo)
+	public void reconcile(UUID bookId, Boolean isBorrowed) {
+		put(bookId, isBorrowed);
+	}
+
+	public void put(UUID bookId, Boolean isBorrowed) {
+		if (isBorrowed == null)
+			books.remove(bookId);
+		else
+			books.put(bookId, toAvailability(isBorrowed));
+	}
+
+	public void remove(UUID bookId) {
+		books.remove(bookId);
+	}
+
+	// Só libera depois do commit, senão um empréstimo poderia ser reservado antes da liberação existir no banco
+	public void releaseAfterCommit(Collection<UUID> bookIds) {
+		TransactionHooks.afterCommit(() -> release(bookIds));
+	}
+
+	public boolean isPunished(UUID userId) {
+		return punishedUsers.contains(userId);
+	}
+
+	public void setPunished(UUID userId, boolean isPunished) {
+		if (isPunished)
+			punishedUsers.add(userId);
+		else
+			punishedUsers.remove(userId);
+	}
+
+	private void release(Collection<UUID> bookIds) {
+		bookIds.forEach(bookId -> books.put(bookId, Availability.AVAILABLE));
+	}
+
+	private Availability toAvailability(boolean isBorrowed) {
+		return isBorrowed ? Availability.BORROWED : Availability.AVAILABLE;
+	}
+}
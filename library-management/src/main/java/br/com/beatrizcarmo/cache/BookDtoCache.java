@@ -0,0 +1,90 @@
+package br.com.beatrizcarmo.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import br.com.beatrizcarmo.dto.BookDto;
+
+// Cache das respostas de GET /books/{id}, guardadas já serializadas para que cada leitura devolva uma cópia nova
+@Component
+public class BookDtoCache {
+
+	private final Cache<UUID, byte[]> cache;
+	private final ObjectMapper objectMapper;
+	private final AtomicLong invalidations = new AtomicLong();
+
+	@Autowired
+	public BookDtoCache(ObjectMapper objectMapper,
+			@Value("${library.cache.book-dto.maximum-size:10000}") long maximumSize) {
+		this.objectMapper = objectMapper;
+		this.cache = Caffeine.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	// O loader só roda quando o livro não está no cache; se ele lançar exceção nada é guardado.
+	// Ele roda fora do cache e não dentro do computeIfAbsent do Caffeine, que segura a trava do bin enquanto
+	// carrega: com o open-in-view, quem espera essa trava pode estar segurando a conexão que o loader precisa.
+	// Se houver uma invalidação durante a carga, o valor carregado pode ser anterior a ela e não é publicado. A
+	// conferência roda dentro do compute, na trava do bin do livro: a invalidação conta antes de remover, então ou
+	// o compute já vê a contagem nova, ou a remoção espera o compute e apaga o que ele guardou
+	public BookDto get(UUID id, Function<UUID, BookDto> loader) {
+		byte[] json = cache.getIfPresent(id);
+		if (json != null)
+			return deserialize(json);
+
+		long invalidationsBefore = invalidations.get();
+		BookDto dto = loader.apply(id);
+		byte[] loaded = serialize(dto);
+		cache.asMap().compute(id, (key, current) -> invalidations.get() == invalidationsBefore ? loaded : current);
+
+		return dto;
+	}
+
+	// A contagem sobe antes da remoção; veja get
+	public void invalidate(UUID id) {
+		invalidations.incrementAndGet();
+		cache.invalidate(id);
+	}
+
+	// Dentro de uma transação só invalida depois do commit, para que uma leitura concorrente
+	// não coloque de volta no cache o estado que ainda não foi alterado
+	public void invalidateAfterCommit(Collection<UUID> ids) {
+		TransactionHooks.afterCommit(() -> invalidateAll(ids));
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private void invalidateAll(Collection<UUID> ids) {
+		invalidations.incrementAndGet();
+		cache.invalidateAll(ids);
+	}
+
+	private byte[] serialize(BookDto dto) {
+		try {
+			return objectMapper.writeValueAsBytes(dto);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private BookDto deserialize(byte[] json) {
+		try {
+			return objectMapper.readValue(json, BookDto.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package br.com.beatrizcarmo.cache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.BookCatalogEntry;
+
+// Cópia em colunas do que os relatórios agregam sobre o catálogo inteiro: o custo em um float[] (NaN quando o
+// livro não tem custo), o empréstimo em um BitSet e o autor e a editora como códigos de um dicionário. Os livros
+// ocupam posições contíguas (remover um livro move o último para o lugar dele), então somar, achar o máximo ou
+// contar é um laço sobre arrays primitivos, sem carregar entidades e sem alocar.
+// É montada na subida, antes do servidor web, e atualizada pelos serviços a cada gravação, como o BookAvailabilityLedger; o banco
+// continua sendo a fonte da verdade. As gravações são curtas e pegam o lock de escrita; as leituras dividem o
+// lock de leitura entre si.
+@Component
+public class CatalogSnapshot implements SmartLifecycle {
+
+	// Mesma fase do UserLoanCounter: carrega antes de o servidor web aceitar requisições
+	private static final int PHASE = 0;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NO_CODE = -1;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final StampedLock lock = new StampedLock();
+	private final Map<UUID, Integer> slots = new HashMap<>();
+	private final Dictionary authors = new Dictionary();
+	private final Dictionary publishers = new Dictionary();
+
+	private UUID[] ids = new UUID[INITIAL_CAPACITY];
+	private float[] costs = new float[INITIAL_CAPACITY];
+	private int[] authorCodes = new int[INITIAL_CAPACITY];
+	private int[] publisherCodes = new int[INITIAL_CAPACITY];
+	private final BitSet borrowed = new BitSet(INITIAL_CAPACITY);
+	private int size;
+	private volatile boolean running;
+
+	@Override
+	public void start() {
+		load();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	// Roda na subida do contexto, antes do servidor web, então uma exclusão ou liberação feita por requisição não é
+	// desfeita pela linha antiga lida no cursor. Não sobrescreve livros que já estão na cópia
+	public void load() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try (Stream<BookCatalogEntry> catalog = bookRepository.streamCatalog()) {
+				catalog.forEach(book -> {
+					long stamp = lock.writeLock();
+					try {
+						if (!slots.containsKey(book.getId()))
+							write(book.getId(), book.getCost(), book.getIsBorrowed(), book.getAuthor(),
+									book.getPublisher());
+					} finally {
+						lock.unlockWrite(stamp);
+					}
+				});
+			}
+		});
+	}
+
+	public void put(Book book) {
+		put(book.getId(), book.getCost(), book.getIsBorrowed(), book.getAuthor(), book.getPublisher());
+	}
+
+	public void put(Collection<Book> books) {
+		long stamp = lock.writeLock();
+		try {
+			for (Book book : books)
+				write(book.getId(), book.getCost(), book.getIsBorrowed(), book.getAuthor(), book.getPublisher());
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void put(UUID id, Float cost, Boolean isBorrowed, String author, String publisher) {
+		long stamp = lock.writeLock();
+		try {
+			write(id, cost, isBorrowed, author, publisher);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// Só muda o empréstimo de um livro que já está na cópia
+	public void setBorrowed(UUID id, boolean isBorrowed) {
+		long stamp = lock.writeLock();
+		try {
+			Integer slot = slots.get(id);
+			if (slot != null)
+				borrowed.set(slot, isBorrowed);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// Só libera depois do commit, pelo mesmo motivo do BookAvailabilityLedger
+	public void releaseAfterCommit(Collection<UUID> bookIds) {
+		TransactionHooks.afterCommit(() -> bookIds.forEach(id -> setBorrowed(id, false)));
+	}
+
+	public void remove(UUID id) {
+		long stamp = lock.writeLock();
+		try {
+			Integer slot = slots.remove(id);
+			if (slot == null)
+				return;
+
+			int last = --size;
+			if (slot != last) {
+				ids[slot] = ids[last];
+				costs[slot] = costs[last];
+				authorCodes[slot] = authorCodes[last];
+				publisherCodes[slot] = publisherCodes[last];
+				borrowed.set(slot, borrowed.get(last));
+				slots.put(ids[slot], slot);
+			}
+			ids[last] = null;
+			borrowed.clear(last);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int countBorrowed() {
+		long stamp = lock.readLock();
+		try {
+			return borrowed.cardinality();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int countWithoutCost() {
+		long stamp = lock.readLock();
+		try {
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (Float.isNaN(costs[i]))
+					count++;
+			}
+			return count;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// Soma em double, como o calculateTotalCostOfBooks; os livros sem custo ficam de fora
+	public double totalCost() {
+		long stamp = lock.readLock();
+		try {
+			double total = 0.0;
+			for (int i = 0; i < size; i++) {
+				if (!Float.isNaN(costs[i]))
+					total += costs[i];
+			}
+			return total;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// 0 quando nenhum livro tem custo, como no getMaxBooksCost
+	public float maxCost() {
+		long stamp = lock.readLock();
+		try {
+			float max = 0f;
+			for (int i = 0; i < size; i++) {
+				// Comparação com NaN é sempre falsa, então os livros sem custo não entram
+				if (costs[i] > max)
+					max = costs[i];
+			}
+			return max;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// A busca no dicionário troca a comparação de strings por comparação de inteiros no laço
+	public int countByAuthor(String author) {
+		long stamp = lock.readLock();
+		try {
+			int code = authors.find(author);
+			if (code == NO_CODE)
+				return 0;
+
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (authorCodes[i] == code)
+					count++;
+			}
+			return count;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public double totalCostByPublisher(String publisher) {
+		long stamp = lock.readLock();
+		try {
+			int code = publishers.find(publisher);
+			if (code == NO_CODE)
+				return 0.0;
+
+			double total = 0.0;
+			for (int i = 0; i < size; i++) {
+				if (publisherCodes[i] == code && !Float.isNaN(costs[i]))
+					total += costs[i];
+			}
+			return total;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	// Precisa do lock de escrita
+	private void write(UUID id, Float cost, Boolean isBorrowed, String author, String publisher) {
+		Integer slot = slots.get(id);
+		if (slot == null) {
+			if (size == ids.length)
+				grow();
+			slot = size++;
+			ids[slot] = id;
+			slots.put(id, slot);
+		}
+
+		costs[slot] = cost == null ? Float.NaN : cost;
+		borrowed.set(slot, Boolean.TRUE.equals(isBorrowed));
+		authorCodes[slot] = authors.code(author);
+		publisherCodes[slot] = publishers.code(publisher);
+	}
+
+	private void grow() {
+		int capacity = ids.length * 2;
+		ids = Arrays.copyOf(ids, capacity);
+		costs = Arrays.copyOf(costs, capacity);
+		authorCodes = Arrays.copyOf(authorCodes, capacity);
+		publisherCodes = Arrays.copyOf(publisherCodes, capacity);
+	}
+
+	// Cada texto distinto recebe um código na ordem em que aparece; os códigos não são reaproveitados
+	private static class Dictionary {
+
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		int code(String value) {
+			return value == null ? NO_CODE : codes.computeIfAbsent(value, key -> codes.size());
+		}
+
+		int find(String value) {
+			return value == null ? NO_CODE : codes.getOrDefault(value, NO_CODE);
+		}
+	}
+}
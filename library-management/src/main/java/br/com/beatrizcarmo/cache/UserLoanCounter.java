@@ -0,0 +1,96 @@
+package br.com.beatrizcarmo.cache;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.UserLoanCount;
+
+// Quantidade de livros associados a cada usuário, mantida em memória para responder sem percorrer os livros.
+// Cada empréstimo soma e cada liberação subtrai o que o banco gravou; as alterações são feitas com compute no
+// ConcurrentHashMap, que trava só o bin do usuário. Usuários sem livros não ficam no mapa.
+@Component
+public class UserLoanCounter implements SmartLifecycle {
+
+	// Fases menores sobem antes; o servidor web só começa a aceitar requisições na fase Integer.MAX_VALUE - 1
+	private static final int PHASE = 0;
+
+	private final ConcurrentMap<UUID, Long> loans = new ConcurrentHashMap<>();
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private volatile boolean running;
+
+	@Override
+	public void start() {
+		load();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	// Roda na subida do contexto, antes do servidor web, então nenhum empréstimo feito por requisição chega antes
+	// da consulta. O que for registrado depois que a consulta começou não está no resultado dela e é somado à
+	// contagem do banco em vez de ser sobrescrito
+	public void load() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try (Stream<UserLoanCount> counts = bookRepository.streamLoanCounts()) {
+				counts.forEach(count -> loans.merge(count.getUserId(), count.getLoans(), Long::sum));
+			}
+		});
+	}
+
+	public long get(UUID userId) {
+		return loans.getOrDefault(userId, 0L);
+	}
+
+	public void increment(UUID userId) {
+		add(userId, 1);
+	}
+
+	public void decrement(UUID userId) {
+		add(userId, -1);
+	}
+
+	// Só subtrai depois do commit, senão um rollback deixaria o contador abaixo do que está no banco
+	public void removeAfterCommit(UUID userId, long releasedLoans) {
+		TransactionHooks.afterCommit(() -> add(userId, -releasedLoans));
+	}
+
+	public void removeAfterCommit(Map<UUID, Long> releasedLoans) {
+		TransactionHooks.afterCommit(() -> releasedLoans.forEach((userId, loans) -> add(userId, -loans)));
+	}
+
+	private void add(UUID userId, long delta) {
+		loans.compute(userId, (id, current) -> {
+			long value = (current == null ? 0 : current) + delta;
+			return value > 0 ? value : null;
+		});
+	}
+}
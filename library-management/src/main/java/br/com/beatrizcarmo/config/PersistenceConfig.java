@@ -0,0 +1,34 @@
+package br.com.beatrizcarmo.config;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// JPA (JDBC) e R2DBC na mesma aplicação. Com o R2DBC no classpath o Spring Boot 2.3 deixa de criar o DataSource
+// (a auto-configuração só roda quando não existe um ConnectionFactory), então ele é criado aqui com as mesmas
+// propriedades spring.datasource.*. Também passam a existir dois gerenciadores de transação; o do JPA é o
+// padrão do @Transactional e o do R2DBC só é usado pelos endpoints /reactive/books.
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class PersistenceConfig {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource dataSource(DataSourceProperties properties) {
+		return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+	}
+
+	@Bean
+	@Primary
+	public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+		return new JpaTransactionManager(entityManagerFactory);
+	}
+}
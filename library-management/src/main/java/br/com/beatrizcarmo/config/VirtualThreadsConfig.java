@@ -0,0 +1,63 @@
+package br.com.beatrizcarmo.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+// Modo opcional (library.threads.virtual=true) em que o Tomcat atende cada requisição em uma virtual thread
+// e as tarefas assíncronas também rodam em virtual threads. Enquanto uma requisição espera o JDBC, a thread
+// do sistema operacional fica livre para outra, então o limite deixa de ser o tamanho do pool do Tomcat e
+// passa a ser o pool de conexões (spring.datasource.hikari.maximum-pool-size).
+// Precisa rodar em Java 21 ou mais novo; o código continua compilado para Java 11 porque o Spring 5.2 não lê
+// classes de versões mais novas, por isso a API é acessada por reflexão.
+@Configuration
+@ConditionalOnProperty(name = "library.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+		return protocolHandler -> protocolHandler.setExecutor(newVirtualThreadExecutor("http-vt-"));
+	}
+
+	@Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	public TaskExecutor applicationTaskExecutor() {
+		return new TaskExecutorAdapter(newVirtualThreadExecutor("task-vt-"));
+	}
+
+	// Executor que cria uma virtual thread nova para cada tarefa, com o nome prefixo + contador
+	public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, factory);
+		} catch (NoSuchMethodException | ClassNotFoundException e) {
+			throw new IllegalStateException(
+					"library.threads.virtual precisa de Java 21 ou mais novo (rodando em " + Runtime.version() + ")", e);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Não foi possível criar o executor de virtual threads", e);
+		}
+	}
+
+	public static boolean isVirtual(Thread thread) {
+		try {
+			return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		} catch (NoSuchMethodException e) {
+			return false;
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
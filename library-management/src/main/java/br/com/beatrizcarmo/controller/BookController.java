@@ -4,11 +4,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.BookImportReportDto;
+import br.com.beatrizcarmo.dto.BookPageDto;
+import br.com.beatrizcarmo.dto.BookRepricingJobDto;
+import br.com.beatrizcarmo.dto.CatalogStatsDto;
+import br.com.beatrizcarmo.dto.OverdueUserDto;
+import br.com.beatrizcarmo.dto.UserLoanCountDto;
+import br.com.beatrizcarmo.service.BookImportService;
+import br.com.beatrizcarmo.service.BookRepricingService;
 import br.com.beatrizcarmo.service.BookService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
+import javax.servlet.http.HttpServletResponse;
+
 @RestController
 @RequestMapping("/books")
 public class BookController {
@@ -16,14 +28,79 @@ public class BookController {
     @Autowired
     BookService bookService;
 
+    @Autowired
+    BookImportService bookImportService;
+
+    @Autowired
+    BookRepricingService bookRepricingService;
+
     @PostMapping
     public BookDto addBook(@RequestBody BookDto bookDto) {
         return bookService.insertBook(bookDto);
     }
     
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public BookImportReportDto importCsv(InputStream body) throws IOException {
+        return bookImportService.importCsv(body);
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public BookImportReportDto importNdjson(InputStream body) throws IOException {
+        return bookImportService.importNdjson(body);
+    }
+
+    @PostMapping(value = "/repricing")
+    public BookRepricingJobDto startRepricing(@RequestParam(value = "libraryId", required = false) UUID libraryId) {
+        return bookRepricingService.startRepricing(libraryId);
+    }
+
+    @GetMapping(value = "/repricing/{id}")
+    public BookRepricingJobDto repricingJob(@PathVariable(value = "id") UUID id) {
+        return bookRepricingService.getRepricingJob(id);
+    }
+
+    @PostMapping(value = "/repricing/{id}/resume")
+    public BookRepricingJobDto resumeRepricing(@PathVariable(value = "id") UUID id) {
+        return bookRepricingService.resumeRepricing(id);
+    }
+
     @GetMapping
-    public List<BookDto> all() {
-    	return bookService.getBooks();
+    public BookPageDto all(@RequestParam(value = "token", required = false) String token,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "sort", required = false) String sort) {
+    	return bookService.getBooks(token, size, sort);
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        bookService.exportBooks(response.getOutputStream());
+    }
+
+    @GetMapping(value = "/search")
+    public List<BookDto> search(@RequestParam(value = "q", required = false) String text,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "author", required = false) String author,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return bookService.searchBooks(text, name, author, limit);
+    }
+
+    @GetMapping(value = "/overdue")
+    public List<OverdueUserDto> overdueUsers(@RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "top", required = false) Integer top) {
+        return bookService.getOverdueUsers(page, size, top);
+    }
+
+    @GetMapping(value = "/stats")
+    public CatalogStatsDto catalogStats(@RequestParam(value = "author", required = false) String author,
+            @RequestParam(value = "publisher", required = false) String publisher) {
+        return bookService.getCatalogStats(author, publisher);
+    }
+
+    @GetMapping(value = "/loans")
+    public List<UserLoanCountDto> loanCounts(@RequestParam(value = "userIds") List<UUID> userIds) {
+        return bookService.getLoanCounts(userIds);
     }
 
     @GetMapping(value = "/{id}")
@@ -36,6 +113,11 @@ public class BookController {
         return bookService.updateBook(newbookDto, id);
     }
 
+    @PostMapping("/{id}/lend")
+    public void lendBook(@PathVariable(value = "id") UUID id, @RequestParam(value = "userId") UUID userId) {
+        bookService.lendBookToUser(userId, id);
+    }
+
     @DeleteMapping("/{id}")
     public void deletBook(@PathVariable(value = "id") UUID id) {
         bookService.deletBook(id);
@@ -0,0 +1,47 @@
+package br.com.beatrizcarmo.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.service.ReactiveBookService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+// Variante não bloqueante de /books: a thread da requisição é liberada enquanto o R2DBC consulta o banco,
+// e a listagem é enviada em stream, um livro por vez, conforme o cliente consome
+@RestController
+@RequestMapping("/reactive/books")
+public class ReactiveBookController {
+
+    @Autowired
+    ReactiveBookService reactiveBookService;
+
+    @PostMapping
+    public Mono<BookDto> addBook(@RequestBody BookDto bookDto) {
+        return reactiveBookService.insertBook(bookDto);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<BookDto> all() {
+        return reactiveBookService.getBooks();
+    }
+
+    @GetMapping(value = "/{id}")
+    public Mono<BookDto> getById(@PathVariable(value = "id") UUID id) {
+        return reactiveBookService.getBookById(id);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<BookDto> updateBook(@PathVariable(value = "id") UUID id, @RequestBody BookDto newBookDto) {
+        return reactiveBookService.updateBook(newBookDto, id);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<Void> deletBook(@PathVariable(value = "id") UUID id) {
+        return reactiveBookService.deletBook(id);
+    }
+}
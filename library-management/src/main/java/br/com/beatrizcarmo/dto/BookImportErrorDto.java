@@ -0,0 +1,7 @@
+package br.com.beatrizcarmo.dto;
+
+public class BookImportErrorDto {
+
+	public long row;
+	public String message;
+}
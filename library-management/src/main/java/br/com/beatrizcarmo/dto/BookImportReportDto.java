@@ -0,0 +1,11 @@
+package br.com.beatrizcarmo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookImportReportDto {
+
+	public long imported;
+	public long rejected;
+	public List<BookImportErrorDto> errors = new ArrayList<>();
+}
@@ -0,0 +1,9 @@
+package br.com.beatrizcarmo.dto;
+
+import java.util.List;
+
+public class BookPageDto {
+
+	public List<BookDto> books;
+	public String nextToken;
+}
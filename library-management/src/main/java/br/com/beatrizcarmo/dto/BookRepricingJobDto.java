@@ -0,0 +1,18 @@
+package br.com.beatrizcarmo.dto;
+
+import java.time.LocalDateTime;
+
+public class BookRepricingJobDto {
+
+	public String id;
+	public String idLibrary;
+	public Integer referenceYear;
+	public String status;
+	public String lastBookId;
+	public Long processedBooks;
+	public Long repricedBooks;
+	public Double booksPerSecond;
+	public LocalDateTime startedAt;
+	public LocalDateTime finishedAt;
+	public String error;
+}
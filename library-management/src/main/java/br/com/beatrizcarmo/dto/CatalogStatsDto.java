@@ -0,0 +1,12 @@
+package br.com.beatrizcarmo.dto;
+
+public class CatalogStatsDto {
+
+	public Integer books;
+	public Integer borrowedBooks;
+	public Integer booksWithoutCost;
+	public Double totalCost;
+	public Float maxCost;
+	public Integer booksByAuthor;
+	public Double totalCostByPublisher;
+}
@@ -0,0 +1,9 @@
+package br.com.beatrizcarmo.dto;
+
+public class OverdueUserDto {
+
+	public String idUser;
+	public String name;
+	public Long lateBooks;
+	public Long daysOverdue;
+}
@@ -0,0 +1,7 @@
+package br.com.beatrizcarmo.dto;
+
+public class UserLoanCountDto {
+
+	public String idUser;
+	public Long loans;
+}
@@ -10,14 +10,32 @@ import br.com.beatrizcarmo.models.User;
 import br.com.beatrizcarmo.repository.LibraryRepository;
 import br.com.beatrizcarmo.repository.UserRepository;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class BookMapper {
 
+	// Nomes dos campos já escapados e codificados, como o Jackson faz para os DTOs
+	private static final SerializedString ID = new SerializedString("id");
+	private static final SerializedString NAME = new SerializedString("name");
+	private static final SerializedString DESCRIPTION = new SerializedString("description");
+	private static final SerializedString AUTHOR = new SerializedString("author");
+	private static final SerializedString COST = new SerializedString("cost");
+	private static final SerializedString YEAR_EDITION = new SerializedString("yearEdition");
+	private static final SerializedString PUBLISHER = new SerializedString("publisher");
+	private static final SerializedString IS_BORROWED = new SerializedString("isBorrowed");
+	private static final SerializedString ID_LIBRARY = new SerializedString("idLibrary");
+	private static final SerializedString ID_USER = new SerializedString("idUser");
+
 	@Autowired
 	private LibraryRepository libraryRepository;
 	
@@ -25,36 +43,82 @@ public class BookMapper {
 	private UserRepository userRepository;
 	
     public BookDto toDto (Book book) {
-        final BookDto dto = new BookDto();
-        
-        dto.id = book.getId().toString();
-        dto.name = book.getName();
-        dto.description = book.getDescription();
-        dto.author = book.getAuthor();
-        dto.cost = book.getCost();
-        dto.yearEdition = book.getYearEdition();
-        dto.publisher = book.getPublisher();
-        dto.isBorrowed = book.getIsBorrowed();
-        dto.idLibrary = book.getLibrary().getId().toString();
-        dto.idUser = book.getUser().getId().toString();
-        
-        return dto;
+        return toDto(book, null);
     }
 
+    // As bibliotecas e os usuários se repetem entre os livros, então cada id vira String uma vez só por lista
     public List<BookDto> toDto(List<Book> books) {
-        final ArrayList<BookDto> booksDto = new ArrayList<>();
+        final ArrayList<BookDto> booksDto = new ArrayList<>(books.size());
+        final Map<UUID, String> ids = new HashMap<>();
         
         for(Book book : books) {
-            booksDto.add(toDto(book));
+            booksDto.add(toDto(book, ids));
         }
         
         return booksDto;
     }
 
+    // Escreve no gerador o mesmo JSON que o BookDto geraria (datas em ISO, como no ObjectMapper do Spring Boot),
+    // sem criar o DTO e sem a serialização por reflexão do Jackson
+    public void writeTo(Book book, JsonGenerator generator) throws IOException {
+        writeTo(book, generator, null);
+    }
+
+    public void writeTo(List<Book> books, JsonGenerator generator) throws IOException {
+        final Map<UUID, String> ids = new HashMap<>();
+        
+        generator.writeStartArray();
+        for(Book book : books) {
+            writeTo(book, generator, ids);
+        }
+        generator.writeEndArray();
+    }
+
+    // As associações viram referências preguiçosas (proxies), sem SELECT antes do INSERT
     public Book toEntity(BookDto dto) {
+        final Book book = toEntityWithoutAssociations(dto);
+        
+        if(dto.idLibrary != null) book.setLibrary(libraryRepository.getOne(UUID.fromString(dto.idLibrary)));
+        if(dto.idUser != null) book.setUser(userRepository.getOne(UUID.fromString(dto.idUser)));
+        
+        return book;
+    }
+
+    // Converte vários livros buscando as bibliotecas e os usuários distintos com uma consulta IN cada
+    public List<Book> toEntities(List<BookDto> dtos) {
+        // Cada id distinto é convertido uma vez e reaproveitado na segunda passada
+        final Map<String, UUID> libraryIds = new HashMap<>();
+        final Map<String, UUID> userIds = new HashMap<>();
+        
+        for(BookDto dto : dtos) {
+            if(dto.idLibrary != null) libraryIds.computeIfAbsent(dto.idLibrary, UUID::fromString);
+            if(dto.idUser != null) userIds.computeIfAbsent(dto.idUser, UUID::fromString);
+        }
+        
+        final Map<UUID, Library> libraries = new HashMap<>();
+        if(!libraryIds.isEmpty()) libraryRepository.findAllById(new HashSet<>(libraryIds.values())).forEach(library -> libraries.put(library.getId(), library));
+        
+        final Map<UUID, User> users = new HashMap<>();
+        if(!userIds.isEmpty()) userRepository.findAllById(new HashSet<>(userIds.values())).forEach(user -> users.put(user.getId(), user));
+        
+        final ArrayList<Book> books = new ArrayList<>(dtos.size());
+        
+        for(BookDto dto : dtos) {
+            final Book book = toEntityWithoutAssociations(dto);
+            
+            if(dto.idLibrary != null) book.setLibrary(libraries.get(libraryIds.get(dto.idLibrary)));
+            if(dto.idUser != null) book.setUser(users.get(userIds.get(dto.idUser)));
+            
+            books.add(book);
+        }
+        
+        return books;
+    }
+
+    private Book toEntityWithoutAssociations(BookDto dto) {
         final Book book = new Book();
         
-        book.setId(UUID.fromString(dto.id));
+        if(dto.id != null) book.setId(UUID.fromString(dto.id));
         book.setName(dto.name);
         book.setDescription(dto.description);
         book.setAuthor(dto.author);
@@ -63,12 +127,56 @@ public class BookMapper {
         book.setPublisher(dto.publisher);
         book.setIsBorrowed(dto.isBorrowed);
         
-        Optional<Library> libraryOpt = libraryRepository.findById(UUID.fromString(dto.idLibrary));
-        if(libraryOpt.isPresent()) book.setLibrary(libraryOpt.get());
+        return book;
+    }
+
+    // ids nulo: converte o id a cada chamada
+    private BookDto toDto(Book book, Map<UUID, String> ids) {
+        final BookDto dto = new BookDto();
         
-        Optional<User> userOpt = userRepository.findById(UUID.fromString(dto.idUser));
-        if(userOpt.isPresent()) book.setUser(userOpt.get());
+        dto.id = book.getId().toString();
+        dto.name = book.getName();
+        dto.description = book.getDescription();
+        dto.author = book.getAuthor();
+        dto.cost = book.getCost();
+        dto.yearEdition = book.getYearEdition();
+        dto.publisher = book.getPublisher();
+        dto.isBorrowed = book.getIsBorrowed();
+        if(book.getLibrary() != null) dto.idLibrary = idToString(book.getLibrary().getId(), ids);
+        if(book.getUser() != null) dto.idUser = idToString(book.getUser().getId(), ids);
         
-        return book;
+        return dto;
+    }
+
+    // Mesma ordem de campos do BookDto
+    private void writeTo(Book book, JsonGenerator generator, Map<UUID, String> ids) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeString(book.getId().toString());
+        generator.writeFieldName(NAME);
+        generator.writeString(book.getName());
+        generator.writeFieldName(DESCRIPTION);
+        generator.writeString(book.getDescription());
+        generator.writeFieldName(AUTHOR);
+        generator.writeString(book.getAuthor());
+        generator.writeFieldName(COST);
+        if(book.getCost() != null) generator.writeNumber(book.getCost());
+        else generator.writeNull();
+        generator.writeFieldName(YEAR_EDITION);
+        generator.writeString(book.getYearEdition() == null ? null : book.getYearEdition().toString());
+        generator.writeFieldName(PUBLISHER);
+        generator.writeString(book.getPublisher());
+        generator.writeFieldName(IS_BORROWED);
+        if(book.getIsBorrowed() != null) generator.writeBoolean(book.getIsBorrowed());
+        else generator.writeNull();
+        generator.writeFieldName(ID_LIBRARY);
+        generator.writeString(book.getLibrary() == null ? null : idToString(book.getLibrary().getId(), ids));
+        generator.writeFieldName(ID_USER);
+        generator.writeString(book.getUser() == null ? null : idToString(book.getUser().getId(), ids));
+        generator.writeEndObject();
+    }
+
+    private String idToString(UUID id, Map<UUID, String> ids) {
+        return ids == null ? id.toString() : ids.computeIfAbsent(id, UUID::toString);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package br.com.beatrizcarmo.dto.mapper;
+
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.BookRow;
+
+@Service
+public class BookRowMapper {
+
+	public BookDto toDto(BookRow row) {
+		final BookDto dto = new BookDto();
+
+		dto.id = row.getId().toString();
+		dto.name = row.getName();
+		dto.description = row.getDescription();
+		dto.author = row.getAuthor();
+		dto.cost = row.getCost();
+		dto.yearEdition = row.getYearEdition();
+		dto.publisher = row.getPublisher();
+		dto.isBorrowed = row.getIsBorrowed();
+		if (row.getLibraryId() != null) dto.idLibrary = row.getLibraryId().toString();
+		if (row.getUserId() != null) dto.idUser = row.getUserId().toString();
+
+		return dto;
+	}
+
+	// O ID do livro não vem do cliente: é gerado por quem vai inserir
+	public BookRow toRow(BookDto dto) {
+		final BookRow row = new BookRow();
+
+		row.setName(dto.name);
+		row.setDescription(dto.description);
+		row.setAuthor(dto.author);
+		row.setCost(dto.cost);
+		row.setYearEdition(dto.yearEdition);
+		row.setPublisher(dto.publisher);
+		row.setIsBorrowed(dto.isBorrowed);
+		if (dto.idLibrary != null) row.setLibraryId(UUID.fromString(dto.idLibrary));
+		if (dto.idUser != null) row.setUserId(UUID.fromString(dto.idUser));
+
+		return row;
+	}
+
+	// Só os campos usados pelo índice de busca
+	public Book toSearchDocument(BookRow row) {
+		final Book book = new Book();
+
+		book.setId(row.getId());
+		book.setName(row.getName());
+		book.setAuthor(row.getAuthor());
+		book.setDescription(row.getDescription());
+
+		return book;
+	}
+}
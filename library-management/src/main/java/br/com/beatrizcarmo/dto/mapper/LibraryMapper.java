@@ -1,11 +1,14 @@
 package br.com.beatrizcarmo.dto.mapper;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import br.com.beatrizcarmo.dto.LibraryDto;
 import br.com.beatrizcarmo.models.Library;
 
@@ -24,16 +27,35 @@ public class LibraryMapper {
 	}
 	
 	public List<LibraryDto> toDto(List<Library> libraries) {
-		final ArrayList<LibraryDto> librariesDto = new ArrayList<>();
+		final ArrayList<LibraryDto> librariesDto = new ArrayList<>(libraries.size());
 		for (Library library : libraries) {
 			librariesDto.add(toDto(library));
 		}
 		return librariesDto;
 	}
 	
+	// Escreve no gerador o mesmo JSON que o LibraryDto geraria, sem criar o DTO
+	public void writeTo(Library library, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("id", library.getId().toString());
+		generator.writeStringField("name", library.getName());
+		generator.writeStringField("adress", library.getAdress());
+		if (library.getContact() != null) generator.writeNumberField("contact", library.getContact());
+		else generator.writeNullField("contact");
+		generator.writeEndObject();
+	}
+	
+	public void writeTo(List<Library> libraries, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		for (Library library : libraries) {
+			writeTo(library, generator);
+		}
+		generator.writeEndArray();
+	}
+	
 	public Library toEntity(LibraryDto dto) {
 		final Library library = new Library();
-		library.setId(UUID.fromString(dto.id));
+		if (dto.id != null) library.setId(UUID.fromString(dto.id));
 		library.setName(dto.name);
 		library.setAdress(dto.adress);
 		library.setContact(dto.contact);
@@ -1,11 +1,14 @@
 package br.com.beatrizcarmo.dto.mapper;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import br.com.beatrizcarmo.dto.UserDto;
 import br.com.beatrizcarmo.models.User;
 
@@ -25,17 +28,36 @@ public class UserMapper {
 	}
 	
 	public List<UserDto> toDto(List<User> users){
-		final ArrayList<UserDto> usersDto = new ArrayList<>();
+		final ArrayList<UserDto> usersDto = new ArrayList<>(users.size());
 		for (User user : users) {
 			usersDto.add(toDto(user));
 		}
 		return usersDto;
 	}
 	
+	// Escreve no gerador o mesmo JSON que o UserDto geraria, sem criar o DTO
+	public void writeTo(User user, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("id", user.getId().toString());
+		generator.writeStringField("name", user.getName());
+		generator.writeStringField("username", user.getUsername());
+		generator.writeStringField("password", user.getPassword());
+		generator.writeBooleanField("isPunished", user.getIsPunished());
+		generator.writeEndObject();
+	}
+	
+	public void writeTo(List<User> users, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		for (User user : users) {
+			writeTo(user, generator);
+		}
+		generator.writeEndArray();
+	}
+	
 	public User toEntity(UserDto dto) {
 		final User user = new User();
 		
-		user.setId(UUID.fromString(dto.id));
+		if (dto.id != null) user.setId(UUID.fromString(dto.id));
 		user.setName(dto.name);
 		user.setUsername(dto.username);
 		user.setPassword(dto.password);
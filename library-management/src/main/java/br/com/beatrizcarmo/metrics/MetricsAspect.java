@@ -0,0 +1,95 @@
+package br.com.beatrizcarmo.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.reactivestreams.Publisher;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Tempo e erros dos métodos públicos dos serviços, dos repositórios do Spring Data e dos mappers. Cada camada é
+// um timer (library.service, library.repository e library.mapper) com as tags da classe, do método e da exceção
+// lançada ("none" quando não houve), e as exceções também são contadas em library.errors por camada.
+// Os histogramas de percentis são ligados no application.properties. Métodos que devolvem um Publisher (os do
+// ReactiveBookService e do ReactiveBookRepository) só montam o fluxo, então não são medidos.
+@Aspect
+@Component
+public class MetricsAspect {
+
+	public static final String SERVICE_TIMER = "library.service";
+	public static final String REPOSITORY_TIMER = "library.repository";
+	public static final String MAPPER_TIMER = "library.mapper";
+	public static final String ERRORS_COUNTER = "library.errors";
+
+	private static final String NO_EXCEPTION = "none";
+	private static final String APPLICATION_PACKAGE = "br.com.beatrizcarmo.";
+
+	private final MeterRegistry registry;
+	private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+	@Autowired
+	public MetricsAspect(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Around("execution(public * br.com.beatrizcarmo.service.impl.*ServiceImpl.*(..))")
+	public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time(SERVICE_TIMER, "service", targetName(joinPoint), joinPoint);
+	}
+
+	// Os métodos herdados (findById, save...) são declarados no CrudRepository, então o nome vem da interface
+	// do repositório que o proxy implementa
+	@Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+	public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time(REPOSITORY_TIMER, "repository", repositoryName(joinPoint.getThis()), joinPoint);
+	}
+
+	@Around("execution(public * br.com.beatrizcarmo.dto.mapper.*Mapper.*(..))")
+	public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time(MAPPER_TIMER, "mapper", targetName(joinPoint), joinPoint);
+	}
+
+	private Object time(String timer, String layer, String type, ProceedingJoinPoint joinPoint) throws Throwable {
+		MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+		if (Publisher.class.isAssignableFrom(signature.getReturnType()))
+			return joinPoint.proceed();
+
+		Timer.Sample sample = Timer.start(registry);
+		String exception = NO_EXCEPTION;
+		try {
+			return joinPoint.proceed();
+		} catch (Throwable e) {
+			exception = e.getClass().getSimpleName();
+			registry.counter(ERRORS_COUNTER, "layer", layer, "class", type, "method", signature.getName(),
+					"exception", exception).increment();
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(timer).tag("class", type).tag("method", signature.getName())
+					.tag("exception", exception).register(registry));
+		}
+	}
+
+	private String targetName(ProceedingJoinPoint joinPoint) {
+		return ClassUtils.getUserClass(joinPoint.getTarget()).getSimpleName();
+	}
+
+	private String repositoryName(Object proxy) {
+		return repositoryNames.computeIfAbsent(proxy.getClass(), proxyClass -> {
+			Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(proxy);
+			for (Class<?> type : interfaces) {
+				if (type.getName().startsWith(APPLICATION_PACKAGE))
+					return type.getSimpleName();
+			}
+			return interfaces[0].getSimpleName();
+		});
+	}
+}
@@ -2,11 +2,21 @@ package br.com.beatrizcarmo.models;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name="book") 
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@Table(name="book", indexes = {
+        @Index(name = "idx_book_name_id", columnList = "name, id"),
+        @Index(name = "idx_book_user_id", columnList = "user_id"),
+        @Index(name = "idx_book_devolution_date", columnList = "devolutionDate")
+})
 public class Book {
 
     @Id
@@ -37,12 +47,45 @@ public class Book {
     @Column
     private LocalDate devolutionDate;
     
-    @ManyToOne
+    // LAZY: o mapper só lê o id da biblioteca e do usuário, que o proxy já tem sem ir ao banco. Com EAGER cada
+    // listagem fazia um SELECT extra por biblioteca e por usuário distintos (N+1)
+    @ManyToOne(fetch = FetchType.LAZY)
     private Library library;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
+    // Controle de concorrência otimista: dois empréstimos simultâneos do mesmo livro não podem ser gravados
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    // Data da última gravação do livro pelo JPA ou pelo R2DBC, usada na versão do catálogo do índice de busca
+    @Column
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     public UUID getId() {
         return id;
     }
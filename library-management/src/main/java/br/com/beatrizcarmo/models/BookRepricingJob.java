@@ -0,0 +1,173 @@
+package br.com.beatrizcarmo.models;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+// Execução da reprecificação anual em lotes. O checkpoint (último ID processado) é gravado na mesma transação
+// do UPDATE de cada lote, então uma execução interrompida continua do lote seguinte sem descontar nenhum livro
+// duas vezes
+@Entity
+@Table(name="book_repricing_job")
+public class BookRepricingJob {
+
+	public enum Status {
+		RUNNING, COMPLETED, FAILED
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private UUID id;
+
+	// null quando a execução cobre o catálogo inteiro
+	@Column
+	private UUID libraryId;
+
+	// Ano usado no cálculo do desconto, fixado na criação para uma execução retomada em outro ano dar o mesmo preço
+	@Column
+	private int referenceYear;
+
+	@Column
+	@Enumerated(EnumType.STRING)
+	private Status status;
+
+	@Column
+	private UUID lastBookId;
+
+	@Column
+	private long processedBooks;
+
+	@Column
+	private long repricedBooks;
+
+	// Tempo gasto nos lotes, somando todas as retomadas
+	@Column
+	private long elapsedMillis;
+
+	@Column
+	private LocalDateTime startedAt;
+
+	@Column
+	private LocalDateTime finishedAt;
+
+	@Column
+	private String error;
+
+	// Quem grava a execução com a versão lida é o dono dela: uma retomada em outra instância faz o próximo
+	// checkpoint da execução anterior falhar, junto com o UPDATE do lote na mesma transação
+	@Version
+	@Column(nullable = false, columnDefinition = "bigint default 0")
+	private long version;
+
+	public BookRepricingJob() {}
+
+	public BookRepricingJob(UUID libraryId, int referenceYear) {
+		this.libraryId = libraryId;
+		this.referenceYear = referenceYear;
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public void setId(UUID id) {
+		this.id = id;
+	}
+
+	public UUID getLibraryId() {
+		return libraryId;
+	}
+
+	public void setLibraryId(UUID libraryId) {
+		this.libraryId = libraryId;
+	}
+
+	public int getReferenceYear() {
+		return referenceYear;
+	}
+
+	public void setReferenceYear(int referenceYear) {
+		this.referenceYear = referenceYear;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public UUID getLastBookId() {
+		return lastBookId;
+	}
+
+	public void setLastBookId(UUID lastBookId) {
+		this.lastBookId = lastBookId;
+	}
+
+	public long getProcessedBooks() {
+		return processedBooks;
+	}
+
+	public void setProcessedBooks(long processedBooks) {
+		this.processedBooks = processedBooks;
+	}
+
+	public long getRepricedBooks() {
+		return repricedBooks;
+	}
+
+	public void setRepricedBooks(long repricedBooks) {
+		this.repricedBooks = repricedBooks;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public LocalDateTime getStartedAt() {
+		return startedAt;
+	}
+
+	public void setStartedAt(LocalDateTime startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	public LocalDateTime getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setFinishedAt(LocalDateTime finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+}
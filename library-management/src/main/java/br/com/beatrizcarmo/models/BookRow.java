@@ -0,0 +1,170 @@
+package br.com.beatrizcarmo.models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+// A mesma tabela do Book, mapeada para o Spring Data R2DBC. Não tem associações, só os IDs da biblioteca e do
+// usuário, e usa a mesma coluna de versão, então as gravações pelos dois lados respeitam o lock otimista.
+@Table("book")
+public class BookRow implements Persistable<UUID> {
+
+	@Id
+	private UUID id;
+
+	private String name;
+
+	private String description;
+
+	private String author;
+
+	private Float cost;
+
+	@Column("year_edition")
+	private LocalDate yearEdition;
+
+	private String publisher;
+
+	@Column("is_borrowed")
+	private Boolean isBorrowed;
+
+	@Column("devolution_date")
+	private LocalDate devolutionDate;
+
+	@Column("library_id")
+	private UUID libraryId;
+
+	@Column("user_id")
+	private UUID userId;
+
+	@Version
+	private Long version;
+
+	// O R2DBC não tem os callbacks do JPA: quem grava preenche a data
+	@Column("updated_at")
+	private LocalDateTime updatedAt;
+
+	// O ID é gerado pela aplicação, então o R2DBC não tem como saber sozinho se é um INSERT ou um UPDATE
+	@Transient
+	private boolean newRow;
+
+	public UUID getId() {
+		return id;
+	}
+
+	public void setId(UUID id) {
+		this.id = id;
+	}
+
+	@Override
+	public boolean isNew() {
+		return newRow;
+	}
+
+	public void setNew(boolean newRow) {
+		this.newRow = newRow;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(String author) {
+		this.author = author;
+	}
+
+	public Float getCost() {
+		return cost;
+	}
+
+	public void setCost(Float cost) {
+		this.cost = cost;
+	}
+
+	public LocalDate getYearEdition() {
+		return yearEdition;
+	}
+
+	public void setYearEdition(LocalDate yearEdition) {
+		this.yearEdition = yearEdition;
+	}
+
+	public String getPublisher() {
+		return publisher;
+	}
+
+	public void setPublisher(String publisher) {
+		this.publisher = publisher;
+	}
+
+	public Boolean getIsBorrowed() {
+		return isBorrowed;
+	}
+
+	public void setIsBorrowed(Boolean isBorrowed) {
+		this.isBorrowed = isBorrowed;
+	}
+
+	public LocalDate getDevolutionDate() {
+		return devolutionDate;
+	}
+
+	public void setDevolutionDate(LocalDate devolutionDate) {
+		this.devolutionDate = devolutionDate;
+	}
+
+	public UUID getLibraryId() {
+		return libraryId;
+	}
+
+	public void setLibraryId(UUID libraryId) {
+		this.libraryId = libraryId;
+	}
+
+	public UUID getUserId() {
+		return userId;
+	}
+
+	public void setUserId(UUID userId) {
+		this.userId = userId;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(LocalDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
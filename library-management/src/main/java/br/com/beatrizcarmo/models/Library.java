@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -13,9 +14,14 @@ import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "library")
 @Table(name="library") 
 public class Library {
 
@@ -93,11 +99,11 @@ public class Library {
 		this.adress = adress;
 	}
 
-	public int getContact() {
+	public Integer getContact() {
 		return contact;
 	}
 
-	public void setContact(int contact) {
+	public void setContact(Integer contact) {
 		this.contact = contact;
 	}
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package br.com.beatrizcarmo.models;
 
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 
 import javax.persistence.Entity;
@@ -10,7 +11,12 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 @Table(name="users") 
 public class User {
 
@@ -1,16 +1,159 @@
 package br.com.beatrizcarmo.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.projection.BookAvailability;
+import br.com.beatrizcarmo.repository.projection.BookCatalogEntry;
+import br.com.beatrizcarmo.repository.projection.CatalogVersion;
+import br.com.beatrizcarmo.repository.projection.OverdueUserSummary;
+import br.com.beatrizcarmo.repository.projection.PenaltySummary;
+import br.com.beatrizcarmo.repository.projection.UserLoanCount;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, UUID> {
 	
 	Optional<Book> findBookById(UUID id);
+
+	// Paginação por cursor (keyset) ordenada pelo ID
+	List<Book> findAllByOrderByIdAsc(Pageable pageable);
+	List<Book> findByIdGreaterThanOrderByIdAsc(UUID id, Pageable pageable);
+
+	// Paginação por cursor (keyset) ordenada pelo nome, com o ID como desempate. As consultas com nome só leem
+	// a faixa com nome de idx_book_name_id: o limite "name >= :name" abre o range scan no índice e o resto da
+	// condição só descarta os empates já lidos. Os livros sem nome vêm depois, ordenados pelo ID
+	@Query("select b from Book b where b.name is not null order by b.name asc, b.id asc")
+	List<Book> findFirstPageOrderByName(Pageable pageable);
+
+	@Query("select b from Book b where b.name >= :name and (b.name > :name or b.id > :id) "
+			+ "order by b.name asc, b.id asc")
+	List<Book> findPageAfterName(@Param("name") String name, @Param("id") UUID id, Pageable pageable);
+
+	@Query("select b from Book b where b.name is null order by b.id asc")
+	List<Book> findFirstPageWithoutName(Pageable pageable);
+
+	@Query("select b from Book b where b.name is null and b.id > :id order by b.id asc")
+	List<Book> findPageAfterNullName(@Param("id") UUID id, Pageable pageable);
+
+	// Percorre o catálogo inteiro com um cursor no servidor; precisa ser consumido dentro de uma transação
+	@Query("select b from Book b")
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_CACHEABLE, value = "false"),
+		@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	Stream<Book> streamAll();
+
+	// Versão do catálogo guardada no índice de busca para saber, na subida, se ele ainda corresponde ao banco
+	@Query("select count(b) as books, max(b.updatedAt) as lastUpdate from Book b")
+	CatalogVersion findCatalogVersion();
+
+	// Estado de empréstimo de todos os livros, para montar o BookAvailabilityLedger na subida
+	@Query("select b.id as id, b.isBorrowed as isBorrowed from Book b")
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	Stream<BookAvailability> streamAvailability();
+
+	// Custo, empréstimo, autor e editora de todos os livros, para montar o CatalogSnapshot na subida
+	@Query("select b.id as id, b.cost as cost, b.isBorrowed as isBorrowed, b.author as author, b.publisher as publisher from Book b")
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	Stream<BookCatalogEntry> streamCatalog();
+
+	// Livros de cada usuário, para montar o UserLoanCounter na subida
+	@Query("select b.user.id as userId, count(b) as loans from Book b where b.user is not null group by b.user.id")
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_READONLY, value = "true")
+	})
+	Stream<UserLoanCount> streamLoanCounts();
+
+	// Próximo lote da reprecificação: IDs em ordem a partir do checkpoint, do catálogo inteiro ou de uma biblioteca
+	@Query("select b.id from Book b order by b.id asc")
+	List<UUID> findIdsOrderByIdAsc(Pageable pageable);
+
+	@Query("select b.id from Book b where b.id > :afterId order by b.id asc")
+	List<UUID> findIdsAfterOrderByIdAsc(@Param("afterId") UUID afterId, Pageable pageable);
+
+	@Query("select b.id from Book b where b.library.id = :libraryId order by b.id asc")
+	List<UUID> findIdsByLibraryIdOrderByIdAsc(@Param("libraryId") UUID libraryId, Pageable pageable);
+
+	@Query("select b.id from Book b where b.library.id = :libraryId and b.id > :afterId order by b.id asc")
+	List<UUID> findIdsByLibraryIdAfterOrderByIdAsc(@Param("libraryId") UUID libraryId, @Param("afterId") UUID afterId,
+			Pageable pageable);
+
+	// Mesmo desconto do updateBookPriceAccordingYearEdition (1% do custo por ano desde a edição) em um único
+	// UPDATE para o lote; livros sem custo ou sem ano de edição ficam como estão. A conta é feita em numeric com
+	// 2 casas, arredondando metade para cima como o MathCalculator.applyDiscount com HALF_UP
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("update Book b set b.cost = cast(cast(b.cost as big_decimal) "
+			+ "- cast(b.cost as big_decimal) * (:referenceYear - year(b.yearEdition)) / 100 as big_decimal), "
+			+ "b.version = b.version + 1 where b.id in :ids and b.cost is not null and b.yearEdition is not null")
+	int repriceByYearEdition(@Param("ids") Collection<UUID> ids, @Param("referenceYear") int referenceYear);
+
+	@Query("select b.id as id, b.cost as cost, b.isBorrowed as isBorrowed, b.author as author, b.publisher as publisher "
+			+ "from Book b where b.id in :ids")
+	List<BookCatalogEntry> findCatalogEntriesByIdIn(@Param("ids") Collection<UUID> ids);
+
+	@Query("select b.isBorrowed from Book b where b.id = :id")
+	Optional<Boolean> findIsBorrowedById(@Param("id") UUID id);
+
+	// Trava os livros dos usuários até o fim da transação: um empréstimo concorrente desses livros espera a
+	// liberação e falha pela versão, e um livro emprestado depois da consulta não entra na liberação
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select b from Book b where b.user.id in :userIds")
+	List<Book> lockByUserIdIn(@Param("userIds") Collection<UUID> userIds);
+
+	// Libera os livros travados com um único UPDATE, então o banco e os caches mudam exatamente os mesmos livros;
+	// incrementa a versão porque o UPDATE em massa não passa pelo @Version
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("update Book b set b.user = null, b.devolutionDate = null, b.isBorrowed = false, b.version = b.version + 1 "
+			+ "where b.id in :ids")
+	int releaseLoansByIdIn(@Param("ids") Collection<UUID> ids);
+
+	// Valida os livros do usuário e soma o custo dos livros com devolução depois da data limite. Cada custo é
+	// arredondado para centavos antes da soma, então o total é um long exato em vez de uma soma de floats
+	@Query("select sum(case when b.isBorrowed is null or b.isBorrowed = false then 1 else 0 end) as notBorrowedBooks, "
+			+ "sum(case when b.devolutionDate is null then 1 else 0 end) as booksWithoutDevolutionDate, "
+			+ "sum(case when b.cost is null then 1 else 0 end) as booksWithoutCost, "
+			+ "sum(case when b.devolutionDate > :limitDate then cast(round(b.cost * 100) as long) else 0 end) as lateBooksCostInCents "
+			+ "from Book b where b.user.id = :userId")
+	PenaltySummary summarizePenaltyByUserId(@Param("userId") UUID userId, @Param("limitDate") LocalDate limitDate);
+
+	// Usuários com livros atrasados, do mais atrasado para o menos atrasado
+	@Query("select u.id as userId, u.name as userName, count(b) as lateBooks, min(b.devolutionDate) as oldestDevolutionDate "
+			+ "from Book b join b.user u where b.devolutionDate < :today "
+			+ "group by u.id, u.name order by min(b.devolutionDate) asc, u.id asc")
+	List<OverdueUserSummary> findOverdueUsers(@Param("today") LocalDate today, Pageable pageable);
+
+	// Mesmo agrupamento sem ordenação, para ser percorrido com um cursor
+	@Query("select u.id as userId, u.name as userName, count(b) as lateBooks, min(b.devolutionDate) as oldestDevolutionDate "
+			+ "from Book b join b.user u where b.devolutionDate < :today group by u.id, u.name")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+	Stream<OverdueUserSummary> streamOverdueUsers(@Param("today") LocalDate today);
 }
@@ -0,0 +1,23 @@
+package br.com.beatrizcarmo.repository;
+
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import br.com.beatrizcarmo.models.BookRepricingJob;
+
+@Repository
+public interface BookRepricingJobRepository extends JpaRepository<BookRepricingJob, UUID> {
+
+	// Uma execução do catálogo inteiro alcança os livros de todas as bibliotecas
+	boolean existsByReferenceYearAndIdNot(int referenceYear, UUID jobId);
+
+	// Uma execução de uma biblioteca só encontra outra da mesma biblioteca ou do catálogo inteiro
+	@Query("select count(j) > 0 from BookRepricingJob j where j.referenceYear = :referenceYear and j.id <> :jobId "
+			+ "and (j.libraryId is null or j.libraryId = :libraryId)")
+	boolean existsForLibrary(@Param("libraryId") UUID libraryId, @Param("referenceYear") int referenceYear,
+			@Param("jobId") UUID jobId);
+}
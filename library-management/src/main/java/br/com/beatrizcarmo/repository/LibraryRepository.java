@@ -1,9 +1,15 @@
 package br.com.beatrizcarmo.repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import javax.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import br.com.beatrizcarmo.models.Library;
@@ -13,4 +19,14 @@ public interface LibraryRepository extends JpaRepository<Library, UUID> {
 
 	Library findByUsername(String username);
 	List<Library> findByNameContaining(String name);
+
+	// Travas usadas para serializar entre instâncias a criação e a retomada das reprecificações: a execução de
+	// uma biblioteca trava a biblioteca e a do catálogo inteiro trava todas, sempre na ordem do ID
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select l from Library l where l.id = :id")
+	Optional<Library> lockById(@Param("id") UUID id);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select l from Library l order by l.id")
+	List<Library> lockAllOrderById();
 }
\ No newline at end of file
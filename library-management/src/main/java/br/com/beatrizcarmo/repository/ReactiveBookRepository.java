@@ -0,0 +1,16 @@
+package br.com.beatrizcarmo.repository;
+
+import java.util.UUID;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import br.com.beatrizcarmo.models.BookRow;
+import reactor.core.publisher.Flux;
+
+// Versão não bloqueante (R2DBC) do BookRepository, usada pelos endpoints /reactive/books
+@Repository
+public interface ReactiveBookRepository extends ReactiveCrudRepository<BookRow, UUID> {
+
+	Flux<BookRow> findAllByOrderByIdAsc();
+}
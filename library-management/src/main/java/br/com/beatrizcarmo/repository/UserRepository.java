@@ -1,8 +1,10 @@
 package br.com.beatrizcarmo.repository;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import br.com.beatrizcarmo.models.User;
@@ -10,4 +12,6 @@ import br.com.beatrizcarmo.models.User;
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
 
+	@Query("select u.id from User u where u.isPunished = true")
+	List<UUID> findPunishedUserIds();
 }
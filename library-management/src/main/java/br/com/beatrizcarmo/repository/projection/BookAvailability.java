@@ -0,0 +1,10 @@
+package br.com.beatrizcarmo.repository.projection;
+
+import java.util.UUID;
+
+// Só o ID e o estado de empréstimo do livro
+public interface BookAvailability {
+
+	UUID getId();
+	Boolean getIsBorrowed();
+}
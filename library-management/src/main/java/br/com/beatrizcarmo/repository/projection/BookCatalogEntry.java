@@ -0,0 +1,13 @@
+package br.com.beatrizcarmo.repository.projection;
+
+import java.util.UUID;
+
+// Só as colunas que o CatalogSnapshot guarda de cada livro
+public interface BookCatalogEntry {
+
+	UUID getId();
+	Float getCost();
+	Boolean getIsBorrowed();
+	String getAuthor();
+	String getPublisher();
+}
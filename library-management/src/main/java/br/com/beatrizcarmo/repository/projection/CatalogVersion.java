@@ -0,0 +1,10 @@
+package br.com.beatrizcarmo.repository.projection;
+
+import java.time.LocalDateTime;
+
+// Quantidade de livros e data da última gravação: muda a cada livro inserido, alterado ou removido
+public interface CatalogVersion {
+
+	Long getBooks();
+	LocalDateTime getLastUpdate();
+}
@@ -0,0 +1,13 @@
+package br.com.beatrizcarmo.repository.projection;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+// Usuário com livros atrasados, agrupado a partir da tabela de livros
+public interface OverdueUserSummary {
+
+	UUID getUserId();
+	String getUserName();
+	Long getLateBooks();
+	LocalDate getOldestDevolutionDate();
+}
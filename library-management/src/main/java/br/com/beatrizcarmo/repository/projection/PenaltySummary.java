@@ -0,0 +1,10 @@
+package br.com.beatrizcarmo.repository.projection;
+
+// Resumo dos livros de um usuário usado no cálculo da multa
+public interface PenaltySummary {
+
+	Long getNotBorrowedBooks();
+	Long getBooksWithoutDevolutionDate();
+	Long getBooksWithoutCost();
+	Long getLateBooksCostInCents();
+}
@@ -0,0 +1,10 @@
+package br.com.beatrizcarmo.repository.projection;
+
+import java.util.UUID;
+
+// Quantidade de livros associados a um usuário
+public interface UserLoanCount {
+
+	UUID getUserId();
+	Long getLoans();
+}
@@ -0,0 +1,308 @@
+package br.com.beatrizcarmo.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.CatalogVersion;
+
+// Índice invertido (Lucene em disco) sobre o nome, o autor e a descrição dos livros. Cada gravação só reabre o
+// searcher (near-real-time), sem fsync; o commit em disco roda em intervalos e no fechamento. O que não chegou a
+// ser commitado se perde numa queda, e a reconstrução da subida, antes do servidor web, recupera o índice a partir
+// do banco.
+// Cada instância precisa do seu próprio diretório (library.search.index-path, sem valor padrão): o Lucene trava o
+// diretório para um único IndexWriter e uma segunda instância no mesmo caminho não sobe
+@Component
+public class BookSearchIndex implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+	private static final String ID = "id";
+	private static final String NAME = "name";
+	private static final String AUTHOR = "author";
+	private static final String DESCRIPTION = "description";
+
+	// Dados do commit com a versão do catálogo que o índice representa
+	private static final String CATALOG_BOOKS = "catalogBooks";
+	private static final String CATALOG_LAST_UPDATE = "catalogLastUpdate";
+
+	private final Analyzer analyzer = new StandardAnalyzer();
+	private final QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+	private final Directory directory;
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+	private ScheduledExecutorService committer;
+	private volatile boolean running;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	public BookSearchIndex(@Value("${library.search.index-path}") String indexPath,
+			@Value("${library.search.commit-interval-seconds:30}") long commitIntervalSeconds) throws IOException {
+		this(FSDirectory.open(Paths.get(indexPath)));
+
+		committer = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "search-index-commit");
+			thread.setDaemon(true);
+			return thread;
+		});
+		committer.scheduleWithFixedDelay(this::commitQuietly, commitIntervalSeconds, commitIntervalSeconds,
+				TimeUnit.SECONDS);
+	}
+
+	BookSearchIndex(Directory directory) throws IOException {
+		this.directory = directory;
+		this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		this.searcherManager = new SearcherManager(writer, null);
+	}
+
+	// Reconstrói o índice se o último commit não tiver a versão atual do catálogo. A versão só é gravada depois de
+	// uma reconstrução e no fechamento; os commits em intervalos a apagam, então depois de uma queda o último commit
+	// não tem versão ou tem uma anterior às gravações que se perderam
+	public void rebuildIfOutOfSync() {
+		Map<String, String> version = toCommitData(bookRepository.findCatalogVersion());
+		if (version.equals(committedVersion()))
+			return;
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try (Stream<Book> books = bookRepository.streamAll()) {
+				rebuild(books, version);
+			}
+		});
+	}
+
+	void rebuild(Stream<Book> books, Map<String, String> version) {
+		try {
+			writer.deleteAll();
+			for (Book book : (Iterable<Book>) books::iterator) {
+				writer.addDocument(toDocument(book));
+			}
+			commit(version);
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void index(Book book) {
+		index(List.of(book));
+	}
+
+	public void index(List<Book> books) {
+		try {
+			for (Book book : books) {
+				writer.updateDocument(new Term(ID, book.getId().toString()), toDocument(book));
+			}
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void delete(UUID id) {
+		try {
+			writer.deleteDocuments(new Term(ID, id.toString()));
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Busca livre em todos os campos (text) e/ou restrita ao nome e ao autor, ordenada por relevância
+	public List<UUID> search(String text, String name, String author, int limit) {
+		BooleanQuery.Builder query = new BooleanQuery.Builder();
+		boolean hasClauses = false;
+
+		if (text != null && !text.isBlank()) {
+			BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+			addClause(anyField, NAME, text, Occur.SHOULD, 3f);
+			addClause(anyField, AUTHOR, text, Occur.SHOULD, 2f);
+			addClause(anyField, DESCRIPTION, text, Occur.SHOULD, 1f);
+			query.add(anyField.build(), Occur.MUST);
+			hasClauses = true;
+		}
+
+		hasClauses |= addClause(query, NAME, name, Occur.MUST, 1f);
+		hasClauses |= addClause(query, AUTHOR, author, Occur.MUST, 1f);
+
+		if (!hasClauses)
+			return new ArrayList<>();
+
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				ScoreDoc[] hits = searcher.search(query.build(), limit).scoreDocs;
+				List<UUID> ids = new ArrayList<>(hits.length);
+
+				for (ScoreDoc hit : hits) {
+					ids.add(UUID.fromString(searcher.doc(hit.doc).get(ID)));
+				}
+				return ids;
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Grava em disco o que foi indexado desde o último commit. Outras gravações podem estar entre o banco e o
+	// índice neste momento, então o commit sai sem a versão do catálogo
+	public void commit() throws IOException {
+		if (writer.hasUncommittedChanges())
+			commit(Map.of());
+	}
+
+	// Reconstrói antes de o servidor web aceitar requisições: nenhuma busca vê o índice vazio depois do deleteAll
+	// e nenhuma gravação concorrente indexa um livro que o cursor da reconstrução adicionaria de novo
+	@Override
+	public void start() {
+		rebuildIfOutOfSync();
+		running = true;
+	}
+
+	// Para depois do servidor web (fases maiores param antes) e antes de os beans serem destruídos, com o banco
+	// ainda disponível: não há mais gravações em andamento e o índice vale pela versão atual do catálogo
+	@Override
+	public void stop() {
+		running = false;
+		if (committer != null)
+			committer.shutdownNow();
+
+		try {
+			commit(currentVersion());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		if (committer != null)
+			committer.shutdownNow();
+
+		commit();
+		searcherManager.close();
+		writer.close();
+		directory.close();
+	}
+
+	private boolean addClause(BooleanQuery.Builder query, String field, String value, Occur occur, float boost) {
+		if (value == null || value.isBlank())
+			return false;
+
+		Query fieldQuery = queryBuilder.createBooleanQuery(field, value, Occur.MUST);
+		if (fieldQuery == null)
+			return false;
+
+		query.add(boost == 1f ? fieldQuery : new BoostQuery(fieldQuery, boost), occur);
+		return true;
+	}
+
+	private Document toDocument(Book book) {
+		Document document = new Document();
+		document.add(new StringField(ID, book.getId().toString(), Field.Store.YES));
+
+		if (book.getName() != null)
+			document.add(new TextField(NAME, book.getName(), Field.Store.NO));
+		if (book.getAuthor() != null)
+			document.add(new TextField(AUTHOR, book.getAuthor(), Field.Store.NO));
+		if (book.getDescription() != null)
+			document.add(new TextField(DESCRIPTION, book.getDescription(), Field.Store.NO));
+
+		return document;
+	}
+
+	private void commit(Map<String, String> version) throws IOException {
+		writer.setLiveCommitData(version.entrySet());
+		writer.commit();
+	}
+
+	// Versão guardada no último commit do índice
+	Map<String, String> committedVersion() {
+		Map<String, String> version = new HashMap<>();
+		Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+		if (commitData != null)
+			commitData.forEach(entry -> version.put(entry.getKey(), entry.getValue()));
+		return version;
+	}
+
+	// Se a consulta falhar o commit sai sem versão e a próxima subida reconstrói
+	private Map<String, String> currentVersion() {
+		try {
+			return toCommitData(bookRepository.findCatalogVersion());
+		} catch (RuntimeException e) {
+			log.warn("Falha ao ler a versão do catálogo", e);
+			return Map.of();
+		}
+	}
+
+	private Map<String, String> toCommitData(CatalogVersion version) {
+		return Map.of(CATALOG_BOOKS, String.valueOf(version.getBooks()), CATALOG_LAST_UPDATE,
+				String.valueOf(version.getLastUpdate()));
+	}
+
+	// Uma falha aqui não derruba o agendamento: o próximo intervalo tenta de novo
+	private void commitQuietly() {
+		try {
+			commit();
+		} catch (IOException | RuntimeException e) {
+			log.warn("Falha ao gravar o índice de busca", e);
+		}
+	}
+}
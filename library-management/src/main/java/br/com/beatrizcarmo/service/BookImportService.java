@@ -0,0 +1,12 @@
+package br.com.beatrizcarmo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import br.com.beatrizcarmo.dto.BookImportReportDto;
+
+public interface BookImportService {
+
+	BookImportReportDto importCsv(InputStream in) throws IOException;
+	BookImportReportDto importNdjson(InputStream in) throws IOException;
+}
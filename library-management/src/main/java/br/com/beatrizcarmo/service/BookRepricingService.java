@@ -0,0 +1,12 @@
+package br.com.beatrizcarmo.service;
+
+import java.util.UUID;
+
+import br.com.beatrizcarmo.dto.BookRepricingJobDto;
+
+public interface BookRepricingService {
+
+	BookRepricingJobDto startRepricing(UUID libraryId);
+	BookRepricingJobDto resumeRepricing(UUID jobId);
+	BookRepricingJobDto getRepricingJob(UUID jobId);
+}
@@ -1,19 +1,37 @@
 package br.com.beatrizcarmo.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.BookPageDto;
+import br.com.beatrizcarmo.dto.CatalogStatsDto;
+import br.com.beatrizcarmo.dto.OverdueUserDto;
+import br.com.beatrizcarmo.dto.UserLoanCountDto;
 import br.com.beatrizcarmo.models.Book;
 
 public interface BookService {
 
 	BookDto insertBook(BookDto bookDto);
 	List<BookDto> getBooks();
+	BookPageDto getBooks(String token, Integer size, String sort);
+	void exportBooks(OutputStream out) throws IOException;
+	List<OverdueUserDto> getOverdueUsers(Integer page, Integer size, Integer top);
+	CatalogStatsDto getCatalogStats(String author, String publisher);
+	List<UserLoanCountDto> getLoanCounts(List<UUID> userIds);
 	List<BookDto> getBooksSameAuthorAndName(List<Book> books, String name, String author);
 	List<BookDto> getBooksSameName(List<Book> books, String name);
 	List<BookDto> getBooksSameAuthor(List<Book> books, String author);
+	List<BookDto> getBooksSameAuthorAndNameParallel(List<Book> books, String name, String author);
+	List<BookDto> getBooksSameNameParallel(List<Book> books, String name);
+	List<BookDto> getBooksSameAuthorParallel(List<Book> books, String author);
+	List<BookDto> searchBooks(String text, String name, String author, Integer limit);
 	BookDto getBookById(UUID id);
 	BookDto updateBook(BookDto newbookDto, UUID id);
 	void deletBook(UUID id);
+	void lendBookToUser(UUID userId, UUID bookId);
+	CompletableFuture<Void> lendBookToUserAsync(UUID userId, UUID bookId);
 }
@@ -0,0 +1,16 @@
+package br.com.beatrizcarmo.service;
+
+import java.util.UUID;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+
+	Flux<BookDto> getBooks();
+	Mono<BookDto> getBookById(UUID id);
+	Mono<BookDto> insertBook(BookDto bookDto);
+	Mono<BookDto> updateBook(BookDto newBookDto, UUID id);
+	Mono<Void> deletBook(UUID id);
+}
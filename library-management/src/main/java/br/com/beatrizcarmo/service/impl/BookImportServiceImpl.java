@@ -0,0 +1,307 @@
+package br.com.beatrizcarmo.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.BookImportErrorDto;
+import br.com.beatrizcarmo.dto.BookImportReportDto;
+import br.com.beatrizcarmo.dto.mapper.BookMapper;
+import br.com.beatrizcarmo.exceptions.WrongParametersException;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.search.BookSearchIndex;
+import br.com.beatrizcarmo.service.BookImportService;
+import br.com.beatrizcarmo.service.validation.BookValidator;
+import br.com.beatrizcarmo.utils.CsvReader;
+
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+	private static final int CHUNK_SIZE = 500;
+	private static final int MAX_REPORTED_ERRORS = 1000;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private BookMapper bookMapper;
+
+	@Autowired
+	private BookSearchIndex bookSearchIndex;
+
+	@Autowired
+	private BookAvailabilityLedger availabilityLedger;
+
+	@Autowired
+	private CatalogSnapshot catalogSnapshot;
+
+	@Autowired
+	private UserLoanCounter userLoanCounter;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	// Importa um CSV com cabeçalho, usando os mesmos nomes de campo do BookDto
+	public BookImportReportDto importCsv(InputStream in) throws IOException {
+		CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		BookImportReportDto report = new BookImportReportDto();
+		Chunk chunk = new Chunk();
+
+		List<String> header = csv.readRecord();
+		if (header == null)
+			return report;
+		validateHeader(header);
+
+		List<String> record;
+		long row = 1;
+
+		while ((record = csv.readRecord()) != null) {
+			row++;
+			if (record.size() == 1 && record.get(0).isEmpty())
+				continue;
+
+			BookDto bookDto;
+			try {
+				bookDto = fromCsv(header, record);
+			} catch (RuntimeException e) {
+				reject(report, row, "Valor inválido: " + e.getMessage());
+				continue;
+			}
+
+			addRow(chunk, row, bookDto, report);
+		}
+
+		saveChunk(chunk, report);
+		return report;
+	}
+
+	// Importa um JSON por linha (NDJSON); uma linha inválida não interrompe as demais
+	public BookImportReportDto importNdjson(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		BookImportReportDto report = new BookImportReportDto();
+		Chunk chunk = new Chunk();
+
+		String line;
+		long row = 0;
+
+		while ((line = reader.readLine()) != null) {
+			row++;
+			if (line.isBlank())
+				continue;
+
+			BookDto bookDto;
+			try {
+				bookDto = objectMapper.readValue(line, BookDto.class);
+			} catch (JsonProcessingException e) {
+				reject(report, row, "JSON inválido: " + e.getOriginalMessage());
+				continue;
+			}
+
+			addRow(chunk, row, bookDto, report);
+		}
+
+		saveChunk(chunk, report);
+		return report;
+	}
+
+	private void addRow(Chunk chunk, long row, BookDto bookDto, BookImportReportDto report) {
+		if (!BookValidator.hasNameAndAuthor(bookDto)) {
+			reject(report, row, "Nome e autor são obrigatórios");
+			return;
+		}
+
+		try {
+			if (bookDto.idLibrary != null)
+				UUID.fromString(bookDto.idLibrary);
+			if (bookDto.idUser != null)
+				UUID.fromString(bookDto.idUser);
+		} catch (IllegalArgumentException e) {
+			reject(report, row, "ID de biblioteca ou usuário inválido");
+			return;
+		}
+
+		// A importação sempre cria livros novos; assim o save vira um INSERT sem SELECT antes
+		bookDto.id = null;
+
+		chunk.rows.add(row);
+		chunk.books.add(bookDto);
+
+		if (chunk.books.size() == CHUNK_SIZE)
+			saveChunk(chunk, report);
+	}
+
+	// Grava o lote em uma transação própria, com os INSERTs agrupados em batch pelo Hibernate. O toEntities busca
+	// as bibliotecas e os usuários do lote com um findAllById cada; só as linhas com um ID que não existe são
+	// recusadas, e as demais seguem para o INSERT
+	private void saveChunk(Chunk chunk, BookImportReportDto report) {
+		if (chunk.books.isEmpty())
+			return;
+
+		List<Long> savedRows = new ArrayList<>(chunk.rows.size());
+
+		try {
+			List<Book> savedBooks = new TransactionTemplate(transactionManager).execute(status -> {
+				List<Book> books = bookMapper.toEntities(chunk.books);
+				List<Book> validBooks = new ArrayList<>(books.size());
+
+				for (int i = 0; i < books.size(); i++) {
+					String missing = missingAssociation(chunk.books.get(i), books.get(i));
+					if (missing != null) {
+						reject(report, chunk.rows.get(i), missing);
+						continue;
+					}
+					savedRows.add(chunk.rows.get(i));
+					validBooks.add(books.get(i));
+				}
+
+				List<Book> saved = bookRepository.saveAll(validBooks);
+				entityManager.flush();
+				entityManager.clear();
+				return saved;
+			});
+
+			savedBooks.forEach(book -> availabilityLedger.put(book.getId(), book.getIsBorrowed()));
+			catalogSnapshot.put(savedBooks);
+			savedBooks.forEach(book -> {
+				if (book.getUser() != null)
+					userLoanCounter.increment(book.getUser().getId());
+			});
+			bookSearchIndex.index(savedBooks);
+			report.imported += savedBooks.size();
+		} catch (DataAccessException e) {
+			String message = "Erro ao gravar o lote: " + e.getMostSpecificCause().getMessage();
+			savedRows.forEach(row -> reject(report, row, message));
+		}
+
+		chunk.rows.clear();
+		chunk.books.clear();
+	}
+
+	// O toEntities deixa a associação nula quando o ID não foi encontrado
+	private String missingAssociation(BookDto bookDto, Book book) {
+		if (bookDto.idLibrary != null && book.getLibrary() == null)
+			return "Biblioteca não encontrada: " + bookDto.idLibrary;
+		if (bookDto.idUser != null && book.getUser() == null)
+			return "Usuário não encontrado: " + bookDto.idUser;
+		return null;
+	}
+
+	private void reject(BookImportReportDto report, long row, String message) {
+		report.rejected++;
+
+		if (report.errors.size() < MAX_REPORTED_ERRORS) {
+			BookImportErrorDto error = new BookImportErrorDto();
+			error.row = row;
+			error.message = message;
+			report.errors.add(error);
+		}
+	}
+
+	private void validateHeader(List<String> header) {
+		for (String column : header) {
+			switch (column.trim()) {
+			case "name":
+			case "description":
+			case "author":
+			case "cost":
+			case "yearEdition":
+			case "publisher":
+			case "isBorrowed":
+			case "idLibrary":
+			case "idUser":
+				break;
+			default:
+				throw new WrongParametersException();
+			}
+		}
+	}
+
+	private BookDto fromCsv(List<String> header, List<String> record) {
+		if (record.size() != header.size())
+			throw new IllegalArgumentException("quantidade de colunas diferente do cabeçalho");
+
+		BookDto bookDto = new BookDto();
+
+		for (int i = 0; i < header.size(); i++) {
+			String value = record.get(i).isEmpty() ? null : record.get(i);
+			if (value == null)
+				continue;
+
+			switch (header.get(i).trim()) {
+			case "name":
+				bookDto.name = value;
+				break;
+			case "description":
+				bookDto.description = value;
+				break;
+			case "author":
+				bookDto.author = value;
+				break;
+			case "cost":
+				bookDto.cost = Float.valueOf(value);
+				break;
+			case "yearEdition":
+				bookDto.yearEdition = LocalDate.parse(value);
+				break;
+			case "publisher":
+				bookDto.publisher = value;
+				break;
+			case "isBorrowed":
+				bookDto.isBorrowed = parseBoolean(value);
+				break;
+			case "idLibrary":
+				bookDto.idLibrary = value;
+				break;
+			case "idUser":
+				bookDto.idUser = value;
+				break;
+			}
+		}
+
+		return bookDto;
+	}
+
+	private Boolean parseBoolean(String value) {
+		if (value.equalsIgnoreCase("true"))
+			return true;
+		if (value.equalsIgnoreCase("false"))
+			return false;
+
+		throw new IllegalArgumentException(value);
+	}
+
+	// Linhas aceitas que ainda não foram gravadas, com o número da linha de origem
+	private static class Chunk {
+		final List<Long> rows = new ArrayList<>(CHUNK_SIZE);
+		final List<BookDto> books = new ArrayList<>(CHUNK_SIZE);
+	}
+}
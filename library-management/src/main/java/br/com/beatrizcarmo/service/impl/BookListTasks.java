@@ -0,0 +1,135 @@
+package br.com.beatrizcarmo.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+
+import br.com.beatrizcarmo.models.Book;
+
+// Fork/join para as análises do BookServiceImpl sobre listas grandes. A lista é cortada em pedaços fixos de
+// CHUNK_SIZE livros, cada pedaço roda o mesmo passo da versão sequencial e os resultados são juntados na ordem
+// dos pedaços: as listas saem na mesma ordem da versão sequencial, qualquer que seja o número de threads.
+final class BookListTasks {
+
+	// Abaixo disso o custo de dividir e juntar é maior que o ganho, e os métodos usam a versão sequencial
+	static final int THRESHOLD = 10_000;
+	static final int CHUNK_SIZE = 4_096;
+
+	private BookListTasks() {
+	}
+
+	// O passo recebe cada livro e a lista do pedaço em que deve adicionar o resultado
+	static <R> List<R> collect(ForkJoinPool pool, List<Book> books, BiConsumer<Book, List<R>> step) {
+		List<Book> list = randomAccess(books);
+		List<List<R>> parts = new ArrayList<>(Collections.nCopies(chunks(list), null));
+
+		run(pool, list, chunk -> {
+			List<R> part = new ArrayList<>();
+			for (int i = chunk * CHUNK_SIZE, end = end(list, chunk); i < end; i++)
+				step.accept(list.get(i), part);
+			parts.set(chunk, part);
+		});
+
+		int size = 0;
+		for (List<R> part : parts)
+			size += part.size();
+
+		List<R> result = new ArrayList<>(size);
+		parts.forEach(result::addAll);
+		return result;
+	}
+
+	// As somas parciais são juntadas na ordem dos pedaços, então o resultado não muda com o número de threads.
+	// Pode diferir da soma sequencial na última casa (ulp), porque as parcelas são agrupadas de outro jeito
+	static double sum(ForkJoinPool pool, List<Book> books, ToDoubleFunction<Book> value) {
+		List<Book> list = randomAccess(books);
+		double[] partials = new double[chunks(list)];
+
+		run(pool, list, chunk -> {
+			double partial = 0.0;
+			for (int i = chunk * CHUNK_SIZE, end = end(list, chunk); i < end; i++)
+				partial += value.applyAsDouble(list.get(i));
+			partials[chunk] = partial;
+		});
+
+		double total = 0.0;
+		for (double partial : partials)
+			total += partial;
+		return total;
+	}
+
+	// Cada pedaço guarda a sua exceção em vez de deixá-la sair pelo fork/join, que relançaria uma cópia quando ela
+	// nasce em outra thread. No fim sai a original do primeiro pedaço que falhou na ordem da lista, a mesma que a
+	// versão sequencial lançaria, qualquer que seja a ordem em que as threads terminaram. Os pedaços depois de um
+	// que já falhou não rodam
+	private static void run(ForkJoinPool pool, List<Book> list, IntConsumer chunk) {
+		int chunks = chunks(list);
+		RuntimeException[] failures = new RuntimeException[chunks];
+		AtomicInteger firstFailure = new AtomicInteger(chunks);
+
+		pool.invoke(new ChunkAction(0, chunks, index -> {
+			if (index > firstFailure.get())
+				return;
+
+			try {
+				chunk.accept(index);
+			} catch (RuntimeException e) {
+				failures[index] = e;
+				firstFailure.accumulateAndGet(index, Math::min);
+			}
+		}));
+
+		for (RuntimeException failure : failures) {
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	private static List<Book> randomAccess(List<Book> books) {
+		return books instanceof RandomAccess ? books : new ArrayList<>(books);
+	}
+
+	private static int chunks(List<Book> list) {
+		return (list.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	private static int end(List<Book> list, int chunk) {
+		return Math.min(list.size(), (chunk + 1) * CHUNK_SIZE);
+	}
+
+	// Divide o intervalo de pedaços ao meio até sobrar um pedaço por tarefa
+	private static class ChunkAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final IntConsumer chunk;
+
+		ChunkAction(int from, int to, IntConsumer chunk) {
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (from < to)
+					chunk.accept(from);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			ForkJoinTask.invokeAll(new ChunkAction(from, middle, chunk), new ChunkAction(middle, to, chunk));
+		}
+	}
+}
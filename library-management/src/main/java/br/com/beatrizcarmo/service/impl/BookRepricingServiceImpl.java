@@ -0,0 +1,208 @@
+package br.com.beatrizcarmo.service.impl;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.dto.BookRepricingJobDto;
+import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.models.BookRepricingJob;
+import br.com.beatrizcarmo.models.BookRepricingJob.Status;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.BookRepricingJobRepository;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+import br.com.beatrizcarmo.service.BookRepricingService;
+
+// Reprecificação anual em lotes: em vez de um findById e um save por livro, cada lote de CHUNK_SIZE IDs recebe
+// o desconto em um único UPDATE. Os lotes seguem a ordem do ID a partir do checkpoint da execução, então uma
+// execução interrompida ou que falhou é retomada do lote seguinte ao último gravado.
+@Service
+public class BookRepricingServiceImpl implements BookRepricingService {
+
+	private static final int CHUNK_SIZE = 1000;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private BookRepricingJobRepository jobRepository;
+
+	@Autowired
+	private LibraryRepository libraryRepository;
+
+	@Autowired
+	private CatalogSnapshot catalogSnapshot;
+
+	@Autowired
+	private BookDtoCache bookDtoCache;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TaskExecutor taskExecutor;
+
+	// Execuções rodando nesta instância; só evita uma segunda retomada local, quem garante o dono é o @Version
+	private final Set<UUID> runningJobs = ConcurrentHashMap.newKeySet();
+
+	// Cria a execução para o catálogo inteiro (libraryId null) ou para uma biblioteca e processa os lotes em
+	// segundo plano; o andamento é consultado pelo ID devolvido. O desconto é por ano, então uma segunda execução
+	// no mesmo ano que alcance os mesmos livros aplicaria o desconto duas vezes e é recusada, inclusive quando a
+	// primeira falhou: ela já descontou os livros até o checkpoint e precisa ser retomada, não substituída
+	public BookRepricingJobDto startRepricing(UUID libraryId) {
+		BookRepricingJob job = new TransactionTemplate(transactionManager).execute(status -> {
+			BookRepricingJob created = new BookRepricingJob(libraryId, LocalDate.now().getYear());
+			created.setStatus(Status.RUNNING);
+			created.setStartedAt(LocalDateTime.now());
+			return claim(created);
+		});
+
+		runningJobs.add(job.getId());
+		return submit(job);
+	}
+
+	// Continua do último checkpoint, com o mesmo ano de referência da criação
+	public BookRepricingJobDto resumeRepricing(UUID jobId) {
+		if (!runningJobs.add(jobId))
+			throw new IllegalArgumentException("A reprecificação já está em andamento");
+
+		try {
+			BookRepricingJob job = new TransactionTemplate(transactionManager).execute(status -> {
+				BookRepricingJob found = jobRepository.findById(jobId).orElseThrow(NotFoundException::new);
+				if (found.getStatus() == Status.COMPLETED)
+					throw new IllegalArgumentException("A reprecificação já foi concluída");
+
+				found.setStatus(Status.RUNNING);
+				found.setError(null);
+				return claim(found);
+			});
+			return submit(job);
+		} catch (RuntimeException e) {
+			runningJobs.remove(jobId);
+			throw e;
+		}
+	}
+
+	// Grava a execução sob a trava das bibliotecas que ela alcança e confere se outra execução do mesmo ano alcança
+	// os mesmos livros. A trava é no banco, então dois pedidos em instâncias diferentes não passam os dois pela
+	// consulta; a gravação antes da consulta gera o ID da execução nova, desfeito com a transação se houver outra
+	private BookRepricingJob claim(BookRepricingJob job) {
+		UUID libraryId = job.getLibraryId();
+		if (libraryId == null)
+			libraryRepository.lockAllOrderById();
+		else if (libraryRepository.lockById(libraryId).isEmpty())
+			throw new NotFoundException();
+
+		BookRepricingJob saved = jobRepository.save(job);
+		boolean overlaps = libraryId == null
+				? jobRepository.existsByReferenceYearAndIdNot(saved.getReferenceYear(), saved.getId())
+				: jobRepository.existsForLibrary(libraryId, saved.getReferenceYear(), saved.getId());
+		if (overlaps)
+			throw new IllegalArgumentException("Já existe uma reprecificação deste ano para estes livros");
+
+		return saved;
+	}
+
+	public BookRepricingJobDto getRepricingJob(UUID jobId) {
+		return toDto(jobRepository.findById(jobId).orElseThrow(NotFoundException::new));
+	}
+
+	private BookRepricingJobDto submit(BookRepricingJob job) {
+		BookRepricingJobDto dto = toDto(job);
+		taskExecutor.execute(() -> run(job));
+		return dto;
+	}
+
+	// Se a gravação do status final também falhar, a execução fica RUNNING no banco e pode ser retomada. Se a
+	// execução foi retomada por outra instância, o checkpoint falha pela versão e esta para sem gravar nada
+	private void run(BookRepricingJob job) {
+		UUID jobId = job.getId();
+		long elapsedBefore = job.getElapsedMillis();
+		long start = System.nanoTime();
+		LongSupplier elapsedMillis = () -> elapsedBefore + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		try {
+			List<UUID> ids;
+			while (!(ids = nextChunk(job)).isEmpty())
+				job = repriceChunk(job, ids, elapsedMillis);
+
+			job.setStatus(Status.COMPLETED);
+			job.setFinishedAt(LocalDateTime.now());
+			jobRepository.save(job);
+		} catch (OptimisticLockingFailureException e) {
+			return;
+		} catch (RuntimeException e) {
+			// Relê o checkpoint do banco: o objeto em memória pode ter avançado em um lote que não foi gravado
+			BookRepricingJob failed = jobRepository.findById(jobId).orElseThrow();
+			failed.setStatus(Status.FAILED);
+			failed.setError(e.getMessage());
+			jobRepository.save(failed);
+		} finally {
+			runningJobs.remove(jobId);
+		}
+	}
+
+	private List<UUID> nextChunk(BookRepricingJob job) {
+		Pageable chunk = PageRequest.of(0, CHUNK_SIZE);
+		UUID libraryId = job.getLibraryId();
+		UUID lastBookId = job.getLastBookId();
+
+		if (libraryId == null)
+			return lastBookId == null ? bookRepository.findIdsOrderByIdAsc(chunk)
+					: bookRepository.findIdsAfterOrderByIdAsc(lastBookId, chunk);
+
+		return lastBookId == null ? bookRepository.findIdsByLibraryIdOrderByIdAsc(libraryId, chunk)
+				: bookRepository.findIdsByLibraryIdAfterOrderByIdAsc(libraryId, lastBookId, chunk);
+	}
+
+	// O UPDATE do lote e o checkpoint são gravados na mesma transação; os caches só mudam depois do commit
+	private BookRepricingJob repriceChunk(BookRepricingJob job, List<UUID> ids, LongSupplier elapsedMillis) {
+		BookRepricingJob saved = new TransactionTemplate(transactionManager).execute(status -> {
+			int repriced = bookRepository.repriceByYearEdition(ids, job.getReferenceYear());
+
+			job.setLastBookId(ids.get(ids.size() - 1));
+			job.setProcessedBooks(job.getProcessedBooks() + ids.size());
+			job.setRepricedBooks(job.getRepricedBooks() + repriced);
+			job.setElapsedMillis(elapsedMillis.getAsLong());
+			return jobRepository.save(job);
+		});
+
+		bookRepository.findCatalogEntriesByIdIn(ids).forEach(entry -> catalogSnapshot.put(entry.getId(),
+				entry.getCost(), entry.getIsBorrowed(), entry.getAuthor(), entry.getPublisher()));
+		ids.forEach(bookDtoCache::invalidate);
+		return saved;
+	}
+
+	private BookRepricingJobDto toDto(BookRepricingJob job) {
+		BookRepricingJobDto dto = new BookRepricingJobDto();
+		dto.id = job.getId().toString();
+		dto.idLibrary = job.getLibraryId() == null ? null : job.getLibraryId().toString();
+		dto.referenceYear = job.getReferenceYear();
+		dto.status = job.getStatus().name();
+		dto.lastBookId = job.getLastBookId() == null ? null : job.getLastBookId().toString();
+		dto.processedBooks = job.getProcessedBooks();
+		dto.repricedBooks = job.getRepricedBooks();
+		dto.booksPerSecond = job.getElapsedMillis() == 0 ? null
+				: job.getProcessedBooks() * 1000.0 / job.getElapsedMillis();
+		dto.startedAt = job.getStartedAt();
+		dto.finishedAt = job.getFinishedAt();
+		dto.error = job.getError();
+		return dto;
+	}
+}
@@ -1,6 +1,14 @@
 package br.com.beatrizcarmo.service.impl;
 
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
 import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.BookPageDto;
+import br.com.beatrizcarmo.dto.CatalogStatsDto;
+import br.com.beatrizcarmo.dto.OverdueUserDto;
+import br.com.beatrizcarmo.dto.UserLoanCountDto;
 import br.com.beatrizcarmo.dto.mapper.BookMapper;
 import br.com.beatrizcarmo.exceptions.NotFoundException;
 import br.com.beatrizcarmo.exceptions.WrongParametersException;
@@ -8,21 +16,68 @@ import br.com.beatrizcarmo.models.Book;
 import br.com.beatrizcarmo.models.User;
 import br.com.beatrizcarmo.repository.BookRepository;
 import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.repository.projection.OverdueUserSummary;
+import br.com.beatrizcarmo.repository.projection.PenaltySummary;
+import br.com.beatrizcarmo.search.BookSearchIndex;
 import br.com.beatrizcarmo.service.BookService;
+import br.com.beatrizcarmo.service.validation.BookValidator;
+import br.com.beatrizcarmo.utils.BookCostSummary;
+import br.com.beatrizcarmo.utils.BookCostSummary.Filter;
+import br.com.beatrizcarmo.utils.MathCalculator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+	private static final int DEFAULT_PAGE_SIZE = 20;
+	private static final int MAX_PAGE_SIZE = 100;
+	private static final String SORT_BY_ID = "id";
+	private static final String SORT_BY_NAME = "name";
+	private static final int EXPORT_FLUSH_SIZE = 500;
+	private static final int MAX_OVERDUE_TOP = 1000;
+	private static final int MAX_LEND_ATTEMPTS = 3;
+	private static final int MAX_LOAN_COUNT_USERS = 1000;
+
 	@Autowired
 	private BookRepository bookRepository;
 
@@ -32,6 +87,33 @@ public class BookServiceImpl implements BookService {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private BookSearchIndex bookSearchIndex;
+
+	@Autowired
+	private BookDtoCache bookDtoCache;
+
+	@Autowired
+	private BookAvailabilityLedger availabilityLedger;
+
+	@Autowired
+	private CatalogSnapshot catalogSnapshot;
+
+	@Autowired
+	private UserLoanCounter userLoanCounter;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TaskExecutor taskExecutor;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
 	// ======> Exemplo testes
 
 	// Verifica se o usuário pode pegar o livro emprestado
@@ -43,9 +125,12 @@ public class BookServiceImpl implements BookService {
 		return !user.getIsPunished() && !book.getIsBorrowed();
 	}
 
-	// Calcula o desconto baseado em uma porcentagem
+	// Calcula o desconto baseado em uma porcentagem, em centavos e arredondado para o centavo mais próximo
 	public Double calculateDiscountBasedOnPercentage(Book book, Double percentage) {
-		return book.getCost() * percentage / 100;
+		long cost = MathCalculator.toCents(book.getCost(), RoundingMode.HALF_UP);
+		long basisPoints = MathCalculator.toBasisPoints(percentage, RoundingMode.HALF_UP);
+
+		return MathCalculator.centsToDouble(MathCalculator.percentageOf(cost, basisPoints, RoundingMode.HALF_UP));
 	}
 
 	// ====================== Exercícios - JUNIT ===========================
@@ -54,20 +139,34 @@ public class BookServiceImpl implements BookService {
 	public List<User> getUsersResponsibleForBorrowed(List<Book> books) {
 		List<User> users = new ArrayList<>();
 
-		books.forEach(book -> {
-			if (book.getIsBorrowed() && book.getUser() != null)
-				users.add(book.getUser());
-		});
+		books.forEach(book -> addUserIfBorrowed(book, users));
 
 		return users;
 	}
 
+	// 1.1 - Versão paralela (fork/join) para listas grandes, com o mesmo resultado na mesma ordem
+	public List<User> getUsersResponsibleForBorrowedParallel(List<Book> books) {
+		return getUsersResponsibleForBorrowedParallel(books, ForkJoinPool.commonPool());
+	}
+
+	public List<User> getUsersResponsibleForBorrowedParallel(List<Book> books, ForkJoinPool pool) {
+		if (books.size() < BookListTasks.THRESHOLD)
+			return getUsersResponsibleForBorrowed(books);
+
+		return BookListTasks.collect(pool, books, BookServiceImpl::addUserIfBorrowed);
+	}
+
+	private static void addUserIfBorrowed(Book book, List<User> users) {
+		if (book.getIsBorrowed() && book.getUser() != null)
+			users.add(book.getUser());
+	}
+
 	// 2 - Conta o número de livros emprestados - FEITO
 	public Long countNumberOfBorrowedBooks(List<Book> books) {
 		if (books == null || books.isEmpty())
 			throw new IllegalArgumentException("Nenhum livro foi encontrado");
 
-		return books.stream().filter(Book::getIsBorrowed).count();
+		return summarizeCosts(books, Filter.ALL, new BookCostSummary()).getBorrowedCount();
 	}
 
 	// 3 - Calcula o preço total dos livros passados
@@ -75,31 +174,48 @@ public class BookServiceImpl implements BookService {
 		if (books == null || books.isEmpty())
 			throw new IllegalArgumentException("Nenhum livro foi encontrado");
 
-		Double totalCost = 0.0;
+		BookCostSummary summary = summarizeCosts(books, Filter.ALL, new BookCostSummary());
+		if (summary.getCostCount() != summary.getCount())
+			throw new IllegalArgumentException("Livro cadastrado sem preço");
 
-		for (Book book : books) {
-			if (book.getCost() == null)
-				throw new IllegalArgumentException("Livro cadastrado sem preço");
+		return summary.getSum();
+	}
 
-			totalCost += book.getCost().doubleValue();
-		}
+	// 3.1 - Versão paralela (fork/join). As somas parciais são agrupadas de outro jeito, então o total pode
+	// diferir da versão sequencial na última casa (ulp); as exceções são as mesmas
+	public Double calculateTotalCostOfBooksParallel(List<Book> books) {
+		return calculateTotalCostOfBooksParallel(books, ForkJoinPool.commonPool());
+	}
+
+	public Double calculateTotalCostOfBooksParallel(List<Book> books, ForkJoinPool pool) {
+		if (books == null || books.size() < BookListTasks.THRESHOLD)
+			return calculateTotalCostOfBooks(books);
+
+		return BookListTasks.sum(pool, books, BookServiceImpl::costOf);
+	}
+
+	private static double costOf(Book book) {
+		if (book.getCost() == null)
+			throw new IllegalArgumentException("Livro cadastrado sem preço");
 
-		return totalCost;
+		return book.getCost().doubleValue();
 	}
 
 	// 4 - Pega o valor máximo da lista de livros passada
 	public Double getMaxBooksCost(List<Book> books) {
-		Double maxCost = 0.0;
-
-		for (Book book : books) {
-			if (book.getCost() != null && book.getCost() > maxCost)
-				maxCost = book.getCost().doubleValue();
-		}
+		float maxCost = summarizeCosts(books, Filter.ALL, new BookCostSummary()).getMax();
 
-		if (maxCost == 0.0)
+		// Custos zerados ou negativos nunca contaram como preço cadastrado
+		if (!(maxCost > 0))
 			throw new IllegalArgumentException("Nenhum preço cadastrado");
 
-		return maxCost;
+		return (double) maxCost;
+	}
+
+	// 4.1 - Soma, mínimo, máximo, média e contagens em uma passada, sem alocar por livro. Quem chama várias
+	// vezes reaproveita o mesmo summary; os métodos 2, 3 e 4 são atalhos em cima deste
+	public BookCostSummary summarizeCosts(List<Book> books, Filter filter, BookCostSummary into) {
+		return into.reset().acceptAll(books, filter);
 	}
 
 	// 5 - Pega a quantidade de anos em que foi lançado
@@ -116,19 +232,17 @@ public class BookServiceImpl implements BookService {
 
 	// 6 - Retorna os usuários com livros com a data de devolução atrasada.
 	public List<User> getUsersWithBookWithLateDevolutionDate(List<Book> books) {
-		List<User> users = new ArrayList<>();
+		Set<User> users = new LinkedHashSet<>();
 		books.forEach(book -> {
 			if (book.getDevolutionDate() != null) {
 				if (book.getUser() == null)
 					throw new IllegalArgumentException(
 							"O livro " + book.getName() + " possui data de devolução mas não tem usuário relacionado.");
-				if (book.getDevolutionDate().isBefore(LocalDate.now())) {
-					if (!users.contains(book.getUser()))
-						users.add(book.getUser());
-				}
+				if (book.getDevolutionDate().isBefore(LocalDate.now()))
+					users.add(book.getUser());
 			}
 		});
-		return users;
+		return new ArrayList<>(users);
 	}
 
 	// 7 - Pega a quantidade de livros alugados pelo usuário
@@ -148,20 +262,29 @@ public class BookServiceImpl implements BookService {
 		List<BookDto> booksDto = new ArrayList<>();
 
 		for (Book book : books) {
+			addIfSameAuthorAndName(book, name, author, booksDto);
+		}
 
-			if (book.getName().toLowerCase().contains(name.toLowerCase())
-					&& book.getAuthor().equalsIgnoreCase(author)) {
-				BookDto dto = new BookDto();
+		return booksDto;
+	}
 
-				dto.author = book.getAuthor();
-				dto.name = book.getName();
-				dto.description = book.getDescription();
+	// 8.1 - Versão paralela (fork/join) para listas grandes, com o mesmo resultado na mesma ordem
+	public List<BookDto> getBooksSameAuthorAndNameParallel(List<Book> books, String name, String author) {
+		return getBooksSameAuthorAndNameParallel(books, name, author, ForkJoinPool.commonPool());
+	}
 
-				booksDto.add(dto);
-			}
-		}
+	public List<BookDto> getBooksSameAuthorAndNameParallel(List<Book> books, String name, String author,
+			ForkJoinPool pool) {
+		if (books.size() < BookListTasks.THRESHOLD)
+			return getBooksSameAuthorAndName(books, name, author);
 
-		return booksDto;
+		return BookListTasks.collect(pool, books,
+				(book, booksDto) -> addIfSameAuthorAndName(book, name, author, booksDto));
+	}
+
+	private void addIfSameAuthorAndName(Book book, String name, String author, List<BookDto> booksDto) {
+		if (containsIgnoreCase(book.getName(), name) && book.getAuthor().equalsIgnoreCase(author))
+			booksDto.add(toSummaryDto(book));
 	}
 
 	// 9 - Pega os livros com o mesmo nome que o passado
@@ -169,19 +292,27 @@ public class BookServiceImpl implements BookService {
 		List<BookDto> booksDto = new ArrayList<>();
 
 		for (Book book : books) {
+			addIfSameName(book, name, booksDto);
+		}
 
-			if (book.getName().toLowerCase().contains(name.toLowerCase())) {
-				BookDto dto = new BookDto();
+		return booksDto;
+	}
 
-				dto.author = book.getAuthor();
-				dto.name = book.getName();
-				dto.description = book.getDescription();
+	// 9.1 - Versão paralela (fork/join) para listas grandes, com o mesmo resultado na mesma ordem
+	public List<BookDto> getBooksSameNameParallel(List<Book> books, String name) {
+		return getBooksSameNameParallel(books, name, ForkJoinPool.commonPool());
+	}
 
-				booksDto.add(dto);
-			}
-		}
+	public List<BookDto> getBooksSameNameParallel(List<Book> books, String name, ForkJoinPool pool) {
+		if (books.size() < BookListTasks.THRESHOLD)
+			return getBooksSameName(books, name);
 
-		return booksDto;
+		return BookListTasks.collect(pool, books, (book, booksDto) -> addIfSameName(book, name, booksDto));
+	}
+
+	private void addIfSameName(Book book, String name, List<BookDto> booksDto) {
+		if (containsIgnoreCase(book.getName(), name))
+			booksDto.add(toSummaryDto(book));
 	}
 
 	// 10 - Pega os livros com o mesmo autor que o passado
@@ -189,28 +320,83 @@ public class BookServiceImpl implements BookService {
 		List<BookDto> booksDto = new ArrayList<>();
 
 		for (Book book : books) {
+			addIfSameAuthor(book, author, booksDto);
+		}
+		return booksDto;
+	}
 
-			if (book.getAuthor().toLowerCase().contains(author.toLowerCase())) {
-				BookDto dto = new BookDto();
+	// 10.1 - Versão paralela (fork/join) para listas grandes, com o mesmo resultado na mesma ordem
+	public List<BookDto> getBooksSameAuthorParallel(List<Book> books, String author) {
+		return getBooksSameAuthorParallel(books, author, ForkJoinPool.commonPool());
+	}
 
-				dto.author = book.getAuthor();
-				dto.name = book.getName();
-				dto.description = book.getDescription();
+	public List<BookDto> getBooksSameAuthorParallel(List<Book> books, String author, ForkJoinPool pool) {
+		if (books.size() < BookListTasks.THRESHOLD)
+			return getBooksSameAuthor(books, author);
 
-				booksDto.add(dto);
-			}
+		return BookListTasks.collect(pool, books, (book, booksDto) -> addIfSameAuthor(book, author, booksDto));
+	}
+
+	private void addIfSameAuthor(Book book, String author, List<BookDto> booksDto) {
+		if (containsIgnoreCase(book.getAuthor(), author))
+			booksDto.add(toSummaryDto(book));
+	}
+
+	// Só os campos que as buscas por nome e autor devolvem
+	private BookDto toSummaryDto(Book book) {
+		BookDto dto = new BookDto();
+
+		dto.author = book.getAuthor();
+		dto.name = book.getName();
+		dto.description = book.getDescription();
+
+		return dto;
+	}
+
+	// Compara sem criar cópias em minúsculo das duas strings a cada livro
+	private boolean containsIgnoreCase(String value, String search) {
+		int lastStart = value.length() - search.length();
+
+		for (int start = 0; start <= lastStart; start++) {
+			if (value.regionMatches(true, start, search, 0, search.length()))
+				return true;
 		}
-		return booksDto;
+
+		return false;
+	}
+
+	// 11 - Busca os livros pelo índice de texto (nome, autor e descrição), ordenados por relevância
+	public List<BookDto> searchBooks(String text, String name, String author, Integer limit) {
+		int maxResults = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+		if (maxResults < 1)
+			throw new WrongParametersException();
+
+		List<UUID> ids = bookSearchIndex.search(text, name, author, maxResults);
+		Map<UUID, Book> booksById = new HashMap<>();
+		bookRepository.findAllById(ids).forEach(book -> booksById.put(book.getId(), book));
+
+		List<Book> books = new ArrayList<>(ids.size());
+		for (UUID id : ids) {
+			if (booksById.containsKey(id))
+				books.add(booksById.get(id));
+		}
+
+		return bookMapper.toDto(books);
 	}
 
 	// ======> Exemplo when
 
-	// Verifica se o livro está emprestado
+	// Verifica se o livro está emprestado (no ledger em memória; só vai ao banco se o livro não estiver lá)
 	public boolean verifyIfBookIsBorrowed(UUID bookId) {
+		Boolean isBorrowed = availabilityLedger.isBorrowed(bookId);
+		if (isBorrowed != null)
+			return isBorrowed;
+
 		Optional<Book> bookOpt = bookRepository.findById(bookId);
 
 		if (bookOpt.isPresent()) {
 			Book book = bookOpt.get();
+			availabilityLedger.put(bookId, book.getIsBorrowed());
 			return book.getIsBorrowed();
 
 		} else {
@@ -238,7 +424,14 @@ public class BookServiceImpl implements BookService {
 		Optional<Book> bookOpt = bookRepository.findById(id);
 
 		if (bookOpt.isPresent()) {
-			bookRepository.delete(bookOpt.get());
+			Book book = bookOpt.get();
+			bookRepository.delete(book);
+			if (book.getUser() != null)
+				userLoanCounter.decrement(book.getUser().getId());
+			availabilityLedger.remove(id);
+			catalogSnapshot.remove(id);
+			bookDtoCache.invalidate(id);
+			bookSearchIndex.delete(id);
 		} else {
 			throw new NotFoundException();
 		}
@@ -247,7 +440,64 @@ public class BookServiceImpl implements BookService {
 	// ====================== Exercícios - Mockito ===========================
 
 	// 1 - Emprestar um livro para um usuário
+	// O livro é reservado antes no ledger, então um livro já emprestado é recusado sem ir ao banco
 	public void lendBookToUser(UUID userId, UUID bookId) {
+		reserveBook(userId, bookId);
+		confirmLend(userId, bookId);
+	}
+
+	// 1.1 - Emprestar um livro respondendo assim que o ledger reserva; a gravação no banco é confirmada depois
+	public CompletableFuture<Void> lendBookToUserAsync(UUID userId, UUID bookId) {
+		reserveBook(userId, bookId);
+		return CompletableFuture.runAsync(() -> confirmLend(userId, bookId), taskExecutor);
+	}
+
+	private void reserveBook(UUID userId, UUID bookId) {
+		if (availabilityLedger.isPunished(userId))
+			throw new IllegalArgumentException("O usuário não está autorizado para pegar novos livros");
+
+		if (!availabilityLedger.tryReserve(bookId))
+			throw new IllegalArgumentException("Livro já foi emprestado");
+	}
+
+	// Se o banco recusar o empréstimo, o ledger volta para o estado que está gravado
+	private void confirmLend(UUID userId, UUID bookId) {
+		UUID previousUserId;
+		try {
+			previousUserId = lendInDatabase(userId, bookId);
+		} catch (RuntimeException e) {
+			availabilityLedger.reconcile(bookId, bookRepository.findIsBorrowedById(bookId).orElse(null));
+			throw e;
+		}
+
+		availabilityLedger.confirm(bookId);
+		catalogSnapshot.setBorrowed(bookId, true);
+		// O livro pode ainda estar associado a quem o pegou da última vez; se for o mesmo usuário a conta não muda
+		if (!userId.equals(previousUserId)) {
+			userLoanCounter.increment(userId);
+			if (previousUserId != null)
+				userLoanCounter.decrement(previousUserId);
+		}
+		bookDtoCache.invalidate(bookId);
+	}
+
+	// A leitura e a gravação ficam na mesma transação e o @Version do livro faz o UPDATE falhar se outro
+	// empréstimo gravou antes; nesse caso tenta de novo, e a nova leitura já vê o livro emprestado.
+	// Devolve o usuário que estava associado ao livro antes do empréstimo
+	private UUID lendInDatabase(UUID userId, UUID bookId) {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+		for (int attempt = 1;; attempt++) {
+			try {
+				return transaction.execute(status -> lend(userId, bookId));
+			} catch (ConcurrencyFailureException e) {
+				if (attempt == MAX_LEND_ATTEMPTS)
+					throw e;
+			}
+		}
+	}
+
+	private UUID lend(UUID userId, UUID bookId) {
 		Optional<Book> bookOpt = bookRepository.findById(bookId);
 		Book book = bookOpt.orElseThrow();
 
@@ -260,8 +510,11 @@ public class BookServiceImpl implements BookService {
 		if (user.getIsPunished())
 			throw new IllegalArgumentException("O usuário não está autorizado para pegar novos livros");
 
+		UUID previousUserId = book.getUser() == null ? null : book.getUser().getId();
 		book.setUser(user);
+		book.setIsBorrowed(true);
 		bookRepository.save(book);
+		return previousUserId;
 	}
 
 	// 2 - Atualizar o custo do livro de acordo com o ano de lançamento
@@ -271,23 +524,34 @@ public class BookServiceImpl implements BookService {
 
 		if (book.getYearEdition() == null)
 			throw new IllegalArgumentException("Ano de lançamento não encontrado");
-		Integer numberOfYearsOfReleased = LocalDate.now().getYear() - book.getYearEdition().getYear();
+		int numberOfYearsOfReleased = LocalDate.now().getYear() - book.getYearEdition().getYear();
 
 		if (book.getCost() == null)
 			throw new IllegalArgumentException("Custo do livro não encontrado");
-		Float discount = book.getCost() * numberOfYearsOfReleased / 100;
 
-		book.setCost(book.getCost() - discount);
+		// 1% de desconto por ano, com o preço final arredondado para centavos como no repriceByYearEdition
+		long cost = MathCalculator.toCents(book.getCost(), RoundingMode.HALF_UP);
+		long discountedCost = MathCalculator.applyDiscount(cost,
+				MathCalculator.percentToBasisPoints(numberOfYearsOfReleased), RoundingMode.HALF_UP);
+
+		book.setCost(MathCalculator.centsToFloat(discountedCost));
 		bookRepository.save(book);
+		catalogSnapshot.put(book);
+		bookDtoCache.invalidate(bookId);
 	}
 
 	// 3 - Inserir um livro no banco
 	public BookDto insertBook(BookDto bookDto) {
 
-		if (!bookDto.name.isEmpty() && !bookDto.author.isEmpty()) {
+		if (BookValidator.hasNameAndAuthor(bookDto)) {
 
 			final Book bookEntity = bookMapper.toEntity(bookDto);
 			final Book bookSaved = bookRepository.save(bookEntity);
+			availabilityLedger.put(bookSaved.getId(), bookSaved.getIsBorrowed());
+			catalogSnapshot.put(bookSaved);
+			if (bookSaved.getUser() != null)
+				userLoanCounter.increment(bookSaved.getUser().getId());
+			bookSearchIndex.index(bookSaved);
 			BookDto dto = bookMapper.toDto(bookSaved);
 
 			return dto;
@@ -303,8 +567,193 @@ public class BookServiceImpl implements BookService {
 		return bookMapper.toDto(books);
 	}
 
-	// 5 - Pegar um livro pelo ID
+	// 4.1 - Listar os livros paginados por cursor (keyset), sem carregar a tabela inteira
+	public BookPageDto getBooks(String token, Integer size, String sort) {
+		int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+		if (pageSize < 1)
+			throw new WrongParametersException();
+
+		String[] cursor = token == null ? null : decodePageToken(token);
+		String sortKey = cursor != null ? cursor[0] : (sort == null ? SORT_BY_ID : sort);
+
+		if (sort != null && !sort.equals(sortKey))
+			throw new WrongParametersException();
+
+		// Busca um registro a mais para saber se existe uma próxima página
+		Pageable pageable = PageRequest.of(0, pageSize + 1);
+		List<Book> books;
+
+		if (SORT_BY_ID.equals(sortKey)) {
+			books = cursor == null ? bookRepository.findAllByOrderByIdAsc(pageable)
+					: bookRepository.findByIdGreaterThanOrderByIdAsc(UUID.fromString(cursor[1]), pageable);
+		} else if (SORT_BY_NAME.equals(sortKey)) {
+			if (cursor != null && cursor[2] == null) {
+				books = bookRepository.findPageAfterNullName(UUID.fromString(cursor[1]), pageable);
+			} else {
+				books = cursor == null ? bookRepository.findFirstPageOrderByName(pageable)
+						: bookRepository.findPageAfterName(cursor[2], UUID.fromString(cursor[1]), pageable);
+
+				// A faixa com nome acabou nesta página: completa com os primeiros livros sem nome
+				if (books.size() <= pageSize) {
+					books = new ArrayList<>(books);
+					books.addAll(bookRepository.findFirstPageWithoutName(PageRequest.of(0, pageSize + 1 - books.size())));
+				}
+			}
+		} else {
+			throw new WrongParametersException();
+		}
+
+		BookPageDto page = new BookPageDto();
+
+		if (books.size() > pageSize) {
+			books = books.subList(0, pageSize);
+			page.nextToken = encodePageToken(sortKey, books.get(pageSize - 1));
+		}
+
+		page.books = bookMapper.toDto(books);
+		return page;
+	}
+
+	// O token é opaco para o cliente: chave de ordenação, ID e nome do último livro da página. Um livro sem nome
+	// fica sem a terceira parte, que é diferente de um nome vazio ("name|id|")
+	private String encodePageToken(String sortKey, Book lastBook) {
+		String cursor = sortKey + "|" + lastBook.getId();
+		if (SORT_BY_NAME.equals(sortKey) && lastBook.getName() != null)
+			cursor += "|" + lastBook.getName();
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String[] decodePageToken(String token) {
+		try {
+			String cursor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			String[] parts = cursor.split("\\|", 3);
+
+			UUID.fromString(parts[1]);
+			return Arrays.copyOf(parts, 3);
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			throw new WrongParametersException();
+		}
+	}
+
+	// 4.2 - Exportar o catálogo inteiro em JSON delimitado por linha (NDJSON), sem montar listas em memória
+	@Transactional(readOnly = true)
+	public void exportBooks(OutputStream out) throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+				Stream<Book> books = bookRepository.streamAll()) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			int written = 0;
+
+			for (Book book : (Iterable<Book>) books::iterator) {
+				bookMapper.writeTo(book, generator);
+				generator.writeRaw('\n');
+				entityManager.detach(book);
+
+				// Descarta também os proxies de biblioteca e usuário criados junto com os livros
+				if (++written % EXPORT_FLUSH_SIZE == 0) {
+					entityManager.clear();
+					generator.flush();
+				}
+			}
+		}
+	}
+
+	// 4.3 - Relatório de usuários com livros atrasados, paginado ou só os K mais atrasados
+	@Transactional(readOnly = true)
+	public List<OverdueUserDto> getOverdueUsers(Integer page, Integer size, Integer top) {
+		LocalDate today = LocalDate.now();
+
+		if (top != null) {
+			if (top < 1 || top > MAX_OVERDUE_TOP)
+				throw new WrongParametersException();
+
+			return toOverdueDto(getTopOverdueUsers(today, top), today);
+		}
+
+		int pageNumber = page == null ? 0 : page;
+		int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+		if (pageNumber < 0 || pageSize < 1)
+			throw new WrongParametersException();
+
+		return toOverdueDto(bookRepository.findOverdueUsers(today, PageRequest.of(pageNumber, pageSize)), today);
+	}
+
+	// 4.4 - Totais do catálogo inteiro, lidos da cópia em colunas sem ir ao banco
+	public CatalogStatsDto getCatalogStats(String author, String publisher) {
+		CatalogStatsDto dto = new CatalogStatsDto();
+		dto.books = catalogSnapshot.size();
+		dto.borrowedBooks = catalogSnapshot.countBorrowed();
+		dto.booksWithoutCost = catalogSnapshot.countWithoutCost();
+		dto.totalCost = catalogSnapshot.totalCost();
+		dto.maxCost = catalogSnapshot.maxCost();
+		// Os filtros são opcionais: sem autor ou editora o campo correspondente fica vazio
+		if (author != null && !author.isBlank())
+			dto.booksByAuthor = catalogSnapshot.countByAuthor(author);
+		if (publisher != null && !publisher.isBlank())
+			dto.totalCostByPublisher = catalogSnapshot.totalCostByPublisher(publisher);
+		return dto;
+	}
+
+	// 4.5 - Quantidade de livros de vários usuários de uma vez, lida do contador em memória sem percorrer os livros
+	public List<UserLoanCountDto> getLoanCounts(List<UUID> userIds) {
+		if (userIds == null || userIds.isEmpty())
+			throw new IllegalArgumentException("Nenhum usuário foi informado");
+
+		Set<UUID> distinctUserIds = new LinkedHashSet<>(userIds);
+		if (distinctUserIds.size() > MAX_LOAN_COUNT_USERS)
+			throw new WrongParametersException();
+
+		List<UserLoanCountDto> counts = new ArrayList<>(distinctUserIds.size());
+		for (UUID userId : distinctUserIds) {
+			UserLoanCountDto dto = new UserLoanCountDto();
+			dto.idUser = userId.toString();
+			dto.loans = userLoanCounter.get(userId);
+			counts.add(dto);
+		}
+		return counts;
+	}
+
+	// Mantém só os K mais atrasados em um heap, sem ordenar todos os grupos no banco
+	private List<OverdueUserSummary> getTopOverdueUsers(LocalDate today, int top) {
+		Comparator<OverdueUserSummary> mostOverdueFirst = Comparator
+				.comparing(OverdueUserSummary::getOldestDevolutionDate)
+				.thenComparing(OverdueUserSummary::getUserId);
+		PriorityQueue<OverdueUserSummary> heap = new PriorityQueue<>(top + 1, mostOverdueFirst.reversed());
+
+		try (Stream<OverdueUserSummary> overdueUsers = bookRepository.streamOverdueUsers(today)) {
+			overdueUsers.forEach(summary -> {
+				heap.offer(summary);
+				if (heap.size() > top)
+					heap.poll();
+			});
+		}
+
+		List<OverdueUserSummary> result = new ArrayList<>(heap);
+		result.sort(mostOverdueFirst);
+		return result;
+	}
+
+	private List<OverdueUserDto> toOverdueDto(List<OverdueUserSummary> summaries, LocalDate today) {
+		List<OverdueUserDto> overdueUsers = new ArrayList<>(summaries.size());
+
+		for (OverdueUserSummary summary : summaries) {
+			OverdueUserDto dto = new OverdueUserDto();
+			dto.idUser = summary.getUserId().toString();
+			dto.name = summary.getUserName();
+			dto.lateBooks = summary.getLateBooks();
+			dto.daysOverdue = ChronoUnit.DAYS.between(summary.getOldestDevolutionDate(), today);
+			overdueUsers.add(dto);
+		}
+
+		return overdueUsers;
+	}
+
+	// 5 - Pegar um livro pelo ID (as respostas ficam no cache até o livro ser alterado)
 	public BookDto getBookById(UUID id) {
+		return bookDtoCache.get(id, this::loadBookDto);
+	}
+
+	private BookDto loadBookDto(UUID id) {
 		Optional<Book> book = bookRepository.findById(id);
 
 		if (book.isPresent()) {
@@ -318,7 +767,7 @@ public class BookServiceImpl implements BookService {
 	// 6 - Atualizar um livro
 	public BookDto updateBook(BookDto newbookDto, UUID id) {
 
-		if (!newbookDto.name.isEmpty() && !newbookDto.author.isEmpty()) {
+		if (BookValidator.hasNameAndAuthor(newbookDto)) {
 
 			Optional<Book> bookOpt = bookRepository.findById(id);
 			Book book = bookOpt.orElseThrow();
@@ -329,6 +778,9 @@ public class BookServiceImpl implements BookService {
 			book.setCost(newbookDto.cost);
 
 			Book bookSaved = bookRepository.save(book);
+			catalogSnapshot.put(book);
+			bookDtoCache.invalidate(id);
+			bookSearchIndex.index(bookSaved);
 			BookDto dto = bookMapper.toDto(bookSaved);
 
 			return dto;
@@ -338,22 +790,44 @@ public class BookServiceImpl implements BookService {
 	}
 
 	// 7 - Tirar os empréstimos do usuário
+	@Transactional
 	public void removeUserLoans(UUID userId) {
-		List<Book> books = bookRepository.findAll();
-
 		Optional<User> userOpt = userRepository.findById(userId);
-		User user = userOpt.orElseThrow();
+		userOpt.orElseThrow();
 
-		List<Book> userBooks = books.stream().filter(book -> book.getUser() == user).collect(Collectors.toList());
-		if (userBooks.isEmpty())
+		List<Book> books = bookRepository.lockByUserIdIn(Collections.singleton(userId));
+		if (books.isEmpty())
 			throw new IllegalArgumentException("Não há nenhum livro emprestado para esse usuário");
 
-		userBooks.forEach(book -> {
-			book.setUser(null);
-			book.setDevolutionDate(null);
+		List<UUID> bookIds = books.stream().map(Book::getId).collect(Collectors.toList());
+		int releasedBooks = bookRepository.releaseLoansByIdIn(bookIds);
 
-			bookRepository.save(book);
-		});
+		availabilityLedger.releaseAfterCommit(bookIds);
+		catalogSnapshot.releaseAfterCommit(bookIds);
+		userLoanCounter.removeAfterCommit(userId, releasedBooks);
+		bookDtoCache.invalidateAfterCommit(bookIds);
+	}
+
+	// 7.1 - Tirar os empréstimos de vários usuários em uma única transação
+	@Transactional
+	public int removeUsersLoans(List<UUID> userIds) {
+		if (userIds == null || userIds.isEmpty())
+			throw new IllegalArgumentException("Nenhum usuário foi informado");
+
+		// Os IDs e as contagens saem dos livros travados, os mesmos que o UPDATE libera
+		List<Book> books = bookRepository.lockByUserIdIn(new HashSet<>(userIds));
+		if (books.isEmpty())
+			return 0;
+
+		List<UUID> bookIds = books.stream().map(Book::getId).collect(Collectors.toList());
+		Map<UUID, Long> releasedLoans = books.stream()
+				.collect(Collectors.groupingBy(book -> book.getUser().getId(), Collectors.counting()));
+		availabilityLedger.releaseAfterCommit(bookIds);
+		catalogSnapshot.releaseAfterCommit(bookIds);
+		userLoanCounter.removeAfterCommit(releasedLoans);
+		bookDtoCache.invalidateAfterCommit(bookIds);
+
+		return bookRepository.releaseLoansByIdIn(bookIds);
 	}
 
 	// 8 - Cobrar uma multa depois de 6 meses
@@ -361,26 +835,30 @@ public class BookServiceImpl implements BookService {
 		Float penalty = 0.0f;
 
 		if (user.getIsPunished()) {
-			List<Book> books = bookRepository.findAll();
-			List<Book> userBooks = books.stream().filter(book -> book.getUser() == user).collect(Collectors.toList());
+			PenaltySummary summary = bookRepository.summarizePenaltyByUserId(user.getId(),
+					LocalDate.now().plusMonths(6));
 
-			for (Book book : userBooks) {
-				if (book.getIsBorrowed() == null || !book.getIsBorrowed())
-					throw new IllegalArgumentException("O livro está associado ao usuário, mas não está emprestado");
+			if (isPositive(summary.getNotBorrowedBooks()))
+				throw new IllegalArgumentException("O livro está associado ao usuário, mas não está emprestado");
 
-				if (book.getDevolutionDate() == null)
-					throw new IllegalArgumentException(
-							"O livro está associado ao usuário, mas não tem data de devolução");
+			if (isPositive(summary.getBooksWithoutDevolutionDate()))
+				throw new IllegalArgumentException(
+						"O livro está associado ao usuário, mas não tem data de devolução");
 
-				if (book.getCost() == null)
-					throw new IllegalArgumentException("O livro não possui custo");
+			if (isPositive(summary.getBooksWithoutCost()))
+				throw new IllegalArgumentException("O livro não possui custo");
 
-				if (book.getDevolutionDate().isAfter(LocalDate.now().plusMonths(6)))
-					penalty += book.getCost() * 200 / 100;
-			}
+			// Multa de 200% sobre o custo dos livros atrasados
+			if (summary.getLateBooksCostInCents() != null)
+				penalty = MathCalculator.centsToFloat(MathCalculator.percentageOf(summary.getLateBooksCostInCents(),
+						MathCalculator.percentToBasisPoints(200), RoundingMode.HALF_UP));
 		}
 
 		return penalty;
 	}
 
+	private boolean isPositive(Long value) {
+		return value != null && value > 0;
+	}
+
 }
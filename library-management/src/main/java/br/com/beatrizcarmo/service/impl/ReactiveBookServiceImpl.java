@@ -0,0 +1,135 @@
+package br.com.beatrizcarmo.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.mapper.BookRowMapper;
+import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.exceptions.WrongParametersException;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.BookRow;
+import br.com.beatrizcarmo.repository.ReactiveBookRepository;
+import br.com.beatrizcarmo.search.BookSearchIndex;
+import br.com.beatrizcarmo.service.ReactiveBookService;
+import br.com.beatrizcarmo.service.validation.BookValidator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Mesmas regras do BookServiceImpl, mas com o banco acessado pelo R2DBC sem bloquear threads
+@Service
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+	@Autowired
+	private ReactiveBookRepository reactiveBookRepository;
+
+	@Autowired
+	private BookRowMapper bookRowMapper;
+
+	@Autowired
+	private BookDtoCache bookDtoCache;
+
+	@Autowired
+	private BookAvailabilityLedger availabilityLedger;
+
+	@Autowired
+	private CatalogSnapshot catalogSnapshot;
+
+	@Autowired
+	private UserLoanCounter userLoanCounter;
+
+	@Autowired
+	private BookSearchIndex bookSearchIndex;
+
+	@PersistenceUnit
+	private EntityManagerFactory entityManagerFactory;
+
+	public Flux<BookDto> getBooks() {
+		return reactiveBookRepository.findAllByOrderByIdAsc().map(bookRowMapper::toDto);
+	}
+
+	public Mono<BookDto> getBookById(UUID id) {
+		return findRow(id).map(bookRowMapper::toDto);
+	}
+
+	public Mono<BookDto> insertBook(BookDto bookDto) {
+		if (!BookValidator.hasNameAndAuthor(bookDto))
+			return Mono.error(new NotFoundException());
+
+		BookRow row = bookRowMapper.toRow(bookDto);
+		row.setId(UUID.randomUUID());
+		row.setNew(true);
+		row.setUpdatedAt(LocalDateTime.now());
+
+		return reactiveBookRepository.save(row)
+				.flatMap(saved -> afterWrite(() -> {
+					availabilityLedger.put(saved.getId(), saved.getIsBorrowed());
+					if (saved.getUserId() != null)
+						userLoanCounter.increment(saved.getUserId());
+					putInCatalog(saved);
+					bookSearchIndex.index(bookRowMapper.toSearchDocument(saved));
+				}).thenReturn(bookRowMapper.toDto(saved)));
+	}
+
+	public Mono<BookDto> updateBook(BookDto newBookDto, UUID id) {
+		if (!BookValidator.hasNameAndAuthor(newBookDto))
+			return Mono.error(new WrongParametersException());
+
+		return findRow(id)
+				.flatMap(row -> {
+					row.setName(newBookDto.name);
+					row.setDescription(newBookDto.description);
+					row.setAuthor(newBookDto.author);
+					row.setCost(newBookDto.cost);
+					row.setUpdatedAt(LocalDateTime.now());
+					return reactiveBookRepository.save(row);
+				})
+				.flatMap(saved -> afterWrite(() -> {
+					evictFromCaches(id);
+					putInCatalog(saved);
+					bookSearchIndex.index(bookRowMapper.toSearchDocument(saved));
+				}).thenReturn(bookRowMapper.toDto(saved)));
+	}
+
+	public Mono<Void> deletBook(UUID id) {
+		return findRow(id)
+				.flatMap(row -> reactiveBookRepository.delete(row).then(afterWrite(() -> {
+					availabilityLedger.remove(id);
+					if (row.getUserId() != null)
+						userLoanCounter.decrement(row.getUserId());
+					catalogSnapshot.remove(id);
+					evictFromCaches(id);
+					bookSearchIndex.delete(id);
+				})));
+	}
+
+	private Mono<BookRow> findRow(UUID id) {
+		return reactiveBookRepository.findById(id).switchIfEmpty(Mono.error(NotFoundException::new));
+	}
+
+	// O JPA não vê as gravações do R2DBC: o livro sai do cache de segundo nível e do cache de respostas
+	private void evictFromCaches(UUID id) {
+		entityManagerFactory.getCache().evict(Book.class, id);
+		bookDtoCache.invalidate(id);
+	}
+
+	private void putInCatalog(BookRow row) {
+		catalogSnapshot.put(row.getId(), row.getCost(), row.getIsBorrowed(), row.getAuthor(), row.getPublisher());
+	}
+
+	// O índice do Lucene grava em disco, então roda fora das threads do R2DBC
+	private Mono<Void> afterWrite(Runnable action) {
+		return Mono.fromRunnable(action).subscribeOn(Schedulers.boundedElastic()).then();
+	}
+}
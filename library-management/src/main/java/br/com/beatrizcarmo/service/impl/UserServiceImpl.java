@@ -7,6 +7,7 @@ import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
 import br.com.beatrizcarmo.dto.UserDto;
 import br.com.beatrizcarmo.dto.mapper.UserMapper;
 import br.com.beatrizcarmo.exceptions.NotFoundException;
@@ -22,10 +23,14 @@ public class UserServiceImpl implements UserService {
 	
 	@Autowired
 	private UserMapper userMapper;
+
+	@Autowired
+	private BookAvailabilityLedger availabilityLedger;
 	
 	public UserDto insertUser(UserDto userDto) {
 		final User userEntity = userMapper.toEntity(userDto);
 		final User userSaved = userRepository.save(userEntity);
+		availabilityLedger.setPunished(userSaved.getId(), userSaved.getIsPunished());
 		UserDto dto = userMapper.toDto(userSaved);
 		
 		return dto;
@@ -57,6 +62,7 @@ public class UserServiceImpl implements UserService {
 		user.setIsPunished(newUserDto.isPunished);
 		
 		User userSaved = userRepository.save(user);
+		availabilityLedger.setPunished(id, userSaved.getIsPunished());
 		UserDto dto = userMapper.toDto(userSaved);
 		
 		return dto;
@@ -67,6 +73,7 @@ public class UserServiceImpl implements UserService {
 		User user = userOpt.orElseThrow();
 		
 		userRepository.delete(user);
+		availabilityLedger.setPunished(id, false);
 	}
    
 }
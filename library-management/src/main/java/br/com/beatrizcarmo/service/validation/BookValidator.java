@@ -0,0 +1,15 @@
+package br.com.beatrizcarmo.service.validation;
+
+import br.com.beatrizcarmo.dto.BookDto;
+
+// Regras de validação de livro compartilhadas entre a inserção, a atualização e a importação
+public final class BookValidator {
+
+	private BookValidator() {
+	}
+
+	// Nome e autor são obrigatórios
+	public static boolean hasNameAndAuthor(BookDto bookDto) {
+		return bookDto.name != null && !bookDto.name.isEmpty() && bookDto.author != null && !bookDto.author.isEmpty();
+	}
+}
@@ -0,0 +1,106 @@
+package br.com.beatrizcarmo.utils;
+
+import java.util.List;
+import java.util.RandomAccess;
+
+import br.com.beatrizcarmo.models.Book;
+
+// Soma, mínimo, máximo, média e contagens dos custos de uma lista de livros, calculados em uma passada só e
+// guardados em campos primitivos. O objeto pode ser reaproveitado entre chamadas (reset), então agregar uma
+// lista não aloca nada por livro: o custo é lido como float e nunca volta a ser um Float ou Double.
+// Livros sem custo entram nas contagens, mas não na soma, no mínimo nem no máximo; livros sem o atributo
+// isBorrowed contam como não emprestados.
+public class BookCostSummary {
+
+	public enum Filter {
+		ALL, BORROWED, AVAILABLE
+	}
+
+	private long count;
+	private long borrowedCount;
+	private long costCount;
+	private double sum;
+	private float min;
+	private float max;
+
+	public BookCostSummary() {
+		reset();
+	}
+
+	public BookCostSummary reset() {
+		count = 0;
+		borrowedCount = 0;
+		costCount = 0;
+		sum = 0.0;
+		min = Float.POSITIVE_INFINITY;
+		max = Float.NEGATIVE_INFINITY;
+		return this;
+	}
+
+	// Percorre por índice quando a lista permite, para não criar nem o iterador
+	public BookCostSummary acceptAll(List<Book> books, Filter filter) {
+		if (books instanceof RandomAccess) {
+			for (int i = 0, size = books.size(); i < size; i++)
+				accept(books.get(i), filter);
+		} else {
+			for (Book book : books)
+				accept(book, filter);
+		}
+		return this;
+	}
+
+	public void accept(Book book, Filter filter) {
+		boolean borrowed = Boolean.TRUE.equals(book.getIsBorrowed());
+		if ((filter == Filter.BORROWED && !borrowed) || (filter == Filter.AVAILABLE && borrowed))
+			return;
+
+		count++;
+		if (borrowed)
+			borrowedCount++;
+
+		Float boxedCost = book.getCost();
+		if (boxedCost == null)
+			return;
+
+		float cost = boxedCost;
+		costCount++;
+		sum += cost;
+		// Comparações com NaN são falsas, então um custo NaN não vira mínimo nem máximo
+		if (cost < min)
+			min = cost;
+		if (cost > max)
+			max = cost;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getBorrowedCount() {
+		return borrowedCount;
+	}
+
+	// Livros que entraram e têm custo; count - costCount é o número de livros sem custo
+	public long getCostCount() {
+		return costCount;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	// Float.POSITIVE_INFINITY quando nenhum livro tem custo
+	public float getMin() {
+		return min;
+	}
+
+	// Float.NEGATIVE_INFINITY quando nenhum livro tem custo
+	public float getMax() {
+		return max;
+	}
+
+	// NaN quando nenhum livro tem custo
+	public double getAverage() {
+		return costCount == 0 ? Double.NaN : sum / costCount;
+	}
+}
@@ -0,0 +1,71 @@
+package br.com.beatrizcarmo.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lê um CSV (RFC 4180) registro por registro, sem carregar o arquivo inteiro
+public class CsvReader {
+
+	private final Reader reader;
+	private int next = -2;
+
+	public CsvReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	// Retorna os campos do próximo registro, ou null no fim do arquivo
+	public List<String> readRecord() throws IOException {
+		if (peek() == -1)
+			return null;
+
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		while (true) {
+			int c = read();
+
+			if (quoted) {
+				if (c == -1)
+					throw new IOException("Campo entre aspas não foi fechado");
+
+				if (c == '"') {
+					if (peek() == '"') {
+						field.append((char) read());
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r' && peek() == '\n')
+					read();
+
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+		}
+	}
+
+	private int peek() throws IOException {
+		if (next == -2)
+			next = reader.read();
+		return next;
+	}
+
+	private int read() throws IOException {
+		int c = peek();
+		next = -2;
+		return c;
+	}
+}
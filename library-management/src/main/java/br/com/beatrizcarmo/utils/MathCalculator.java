@@ -1,8 +1,148 @@
 package br.com.beatrizcarmo.utils;
 
+import java.math.RoundingMode;
+
+// Operações com verificação de overflow. Os valores em dinheiro são long em centavos (ponto fixo com 2 casas) e
+// as porcentagens são long em pontos-base (1% = 100), então as contas não passam por float nem por objetos:
+// qualquer resultado que não caiba em um long lança ArithmeticException, como o Math.addExact.
 public class MathCalculator {
 
+    public static final long CENTS_PER_UNIT = 100;
+    public static final long BASIS_POINTS_PER_UNIT = 10_000;
+    public static final long BASIS_POINTS_PER_PERCENT = 100;
+
+    // 2^63 como double: o primeiro valor que já não cabe em um long
+    private static final double LONG_RANGE = 0x1p63;
+
     public int add(int x, int y) {
         return Math.addExact(x, y);
     }
+
+    public static long addMoney(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    public static long subtractMoney(long cents, long otherCents) {
+        return Math.subtractExact(cents, otherCents);
+    }
+
+    // Quanto é basisPoints do valor, arredondado para centavos
+    public static long percentageOf(long cents, long basisPoints, RoundingMode mode) {
+        return divide(Math.multiplyExact(cents, basisPoints), BASIS_POINTS_PER_UNIT, mode);
+    }
+
+    // Valor com o desconto aplicado; o arredondamento é feito uma vez só, no preço final. Um desconto negativo
+    // vira acréscimo
+    public static long applyDiscount(long cents, long basisPoints, RoundingMode mode) {
+        return percentageOf(cents, Math.subtractExact(BASIS_POINTS_PER_UNIT, basisPoints), mode);
+    }
+
+    // Divisão inteira com o arredondamento pedido, sem passar por double; o divisor precisa ser positivo
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        if (divisor <= 0)
+            throw new IllegalArgumentException("O divisor precisa ser positivo");
+
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0)
+            return quotient;
+
+        int signum = dividend < 0 ? -1 : 1;
+        boolean awayFromZero;
+
+        switch (mode) {
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case UP:
+                awayFromZero = true;
+                break;
+            case FLOOR:
+                awayFromZero = signum < 0;
+                break;
+            case CEILING:
+                awayFromZero = signum > 0;
+                break;
+            case HALF_UP:
+            case HALF_DOWN:
+            case HALF_EVEN:
+                // Compara o resto com a metade do divisor sem calcular 2 * resto, que poderia estourar
+                long absRemainder = Math.abs(remainder);
+                long comparison = absRemainder - (divisor - absRemainder);
+                if (comparison == 0)
+                    awayFromZero = mode == RoundingMode.HALF_UP
+                            || (mode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+                else
+                    awayFromZero = comparison > 0;
+                break;
+            default:
+                throw new ArithmeticException("O resultado precisa ser arredondado");
+        }
+
+        return awayFromZero ? quotient + signum : quotient;
+    }
+
+    // Converte um valor em reais (como o Float do Book.cost) para centavos. A conta é feita sobre o valor binário
+    // do número: 9.7f vale 9.6999998..., então DOWN dá 969 centavos; use um dos modos HALF_* para o valor decimal
+    public static long toCents(double amount, RoundingMode mode) {
+        return round(amount * CENTS_PER_UNIT, mode);
+    }
+
+    // Converte uma porcentagem (10.5 = 10,5%) para pontos-base
+    public static long toBasisPoints(double percentage, RoundingMode mode) {
+        return round(percentage * BASIS_POINTS_PER_PERCENT, mode);
+    }
+
+    public static long percentToBasisPoints(long percentage) {
+        return Math.multiplyExact(percentage, BASIS_POINTS_PER_PERCENT);
+    }
+
+    public static double centsToDouble(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    public static float centsToFloat(long cents) {
+        return (float) centsToDouble(cents);
+    }
+
+    private static long round(double value, RoundingMode mode) {
+        // rint escolhe o inteiro par no empate; value - nearest é exato, então o empate é detectado sem erro
+        double nearest = Math.rint(value);
+        boolean tie = Math.abs(value - nearest) == 0.5;
+        double rounded;
+
+        switch (mode) {
+            case DOWN:
+                rounded = value > 0 ? Math.floor(value) : Math.ceil(value);
+                break;
+            case UP:
+                rounded = value > 0 ? Math.ceil(value) : Math.floor(value);
+                break;
+            case FLOOR:
+                rounded = Math.floor(value);
+                break;
+            case CEILING:
+                rounded = Math.ceil(value);
+                break;
+            case HALF_UP:
+                rounded = !tie ? nearest : value > 0 ? Math.ceil(value) : Math.floor(value);
+                break;
+            case HALF_DOWN:
+                rounded = !tie ? nearest : value > 0 ? Math.floor(value) : Math.ceil(value);
+                break;
+            case HALF_EVEN:
+                rounded = nearest;
+                break;
+            default:
+                if (value != nearest)
+                    throw new ArithmeticException("O resultado precisa ser arredondado");
+                rounded = value;
+        }
+
+        // NaN também cai aqui, porque qualquer comparação com NaN é falsa
+        if (!(Math.abs(rounded) < LONG_RANGE))
+            throw new ArithmeticException("Valor fora do intervalo de um long");
+
+        return (long) rounded;
+    }
 }
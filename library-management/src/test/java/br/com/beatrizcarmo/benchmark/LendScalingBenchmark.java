@@ -0,0 +1,187 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.service.BookService;
+
+// Vazão de empréstimos com vários balcões disputando os mesmos livros: sobe a aplicação como o LoadTestHarness
+// (H2 em memória) e, para cada quantidade de threads, cria um catálogo novo e faz cada thread tentar emprestar
+// todos os livros em uma ordem aleatória pelo BookService. Argumentos que não são números são repassados para o
+// Spring.
+//
+//   java ... LendScalingBenchmark 1 2 4 8
+//
+// Cada rodada mostra os empréstimos por segundo e confere no banco que cada livro foi emprestado exatamente uma
+// vez (emprestado, com usuário e com uma única gravação pelo @Version); se não foi, o benchmark para com erro.
+// Configuração por -D:
+//
+//   lend.books    livros por rodada (padrão 2000)
+//   lend.rounds   rodadas medidas por quantidade de threads, depois de uma de aquecimento (padrão 3)
+public class LendScalingBenchmark {
+
+	private static final int[] DEFAULT_THREADS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		int[] threads = Arrays.stream(args).filter(arg -> arg.matches("\\d+")).mapToInt(Integer::parseInt).toArray();
+		String[] springArgs = Arrays.stream(args).filter(arg -> !arg.matches("\\d+")).toArray(String[]::new);
+		int books = Integer.getInteger("lend.books", 2000);
+		int rounds = Integer.getInteger("lend.rounds", 3);
+
+		Path indexPath = Files.createTempDirectory("library-lend-index");
+		ConfigurableApplicationContext context = LoadTestHarness.start(springArgs, indexPath);
+
+		try {
+			Lends lends = new Lends(context);
+
+			// Aquecimento: JIT, pool de conexões e caches
+			lends.run(Math.max(1, Runtime.getRuntime().availableProcessors()), books);
+
+			System.out.printf("%8s %8s %12s %14s%n", "threads", "round", "lends/s", "attempts/s");
+			for (int count : threads.length > 0 ? threads : DEFAULT_THREADS) {
+				for (int round = 1; round <= rounds; round++) {
+					Result result = lends.run(count, books);
+					System.out.printf("%8d %8d %12.0f %14.0f%n", count, round, result.lends / result.seconds,
+							result.attempts / result.seconds);
+				}
+			}
+		} finally {
+			context.close();
+			try (Stream<Path> files = Files.walk(indexPath)) {
+				files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	private static class Lends {
+
+		private final BookService service;
+		private final BookRepository bookRepository;
+		private final UserRepository userRepository;
+		private final TransactionTemplate transaction;
+		private int rounds;
+
+		Lends(ConfigurableApplicationContext context) {
+			this.service = context.getBean(BookService.class);
+			this.bookRepository = context.getBean(BookRepository.class);
+			this.userRepository = context.getBean(UserRepository.class);
+			this.transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		}
+
+		Result run(int threads, int books) throws Exception {
+			int round = ++rounds;
+			List<UUID> bookIds = createBooks(round, books);
+			List<UUID> userIds = createUsers(round, threads);
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Integer>> results = new ArrayList<>();
+
+			try {
+				for (int i = 0; i < threads; i++) {
+					UUID userId = userIds.get(i);
+					List<UUID> order = new ArrayList<>(bookIds);
+					Collections.shuffle(order, new Random(i));
+
+					results.add(executor.submit(() -> {
+						start.await();
+						int lends = 0;
+						for (UUID bookId : order) {
+							try {
+								service.lendBookToUser(userId, bookId);
+								lends++;
+							} catch (IllegalArgumentException e) {
+								// Outro balcão emprestou antes
+							}
+						}
+						return lends;
+					}));
+				}
+
+				long begin = System.nanoTime();
+				start.countDown();
+				int lends = 0;
+				for (Future<Integer> result : results)
+					lends += result.get();
+				double seconds = (System.nanoTime() - begin) / 1e9;
+
+				checkLentOnce(bookIds, lends);
+				return new Result(lends, (long) threads * books, seconds);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		// Um empréstimo gravado por cima de outro teria incrementado a versão de novo
+		private void checkLentOnce(List<UUID> bookIds, int lends) {
+			long lentOnce = bookRepository.findAllById(bookIds).stream().filter(book -> Boolean.TRUE
+					.equals(book.getIsBorrowed()) && book.getUser() != null && book.getVersion() == 1).count();
+
+			if (lends != bookIds.size() || lentOnce != bookIds.size())
+				throw new IllegalStateException(String.format(
+						"Empréstimos duplicados: %d empréstimos e %d livros emprestados uma vez para %d livros", lends,
+						lentOnce, bookIds.size()));
+		}
+
+		private List<UUID> createBooks(int round, int count) {
+			return transaction.execute(status -> {
+				List<Book> books = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					Book book = new Book();
+					book.setName("Livro " + round + "-" + i);
+					book.setAuthor("Autor");
+					book.setIsBorrowed(false);
+					books.add(book);
+				}
+
+				List<UUID> ids = new ArrayList<>(count);
+				bookRepository.saveAll(books).forEach(book -> ids.add(book.getId()));
+				return ids;
+			});
+		}
+
+		private List<UUID> createUsers(int round, int count) {
+			return transaction.execute(status -> {
+				List<User> users = new ArrayList<>(count);
+				for (int i = 0; i < count; i++)
+					users.add(new User("Usuário " + round + "-" + i, "usuario" + round + "-" + i, "senha", false));
+
+				List<UUID> ids = new ArrayList<>(count);
+				userRepository.saveAll(users).forEach(user -> ids.add(user.getId()));
+				return ids;
+			});
+		}
+	}
+
+	private static class Result {
+
+		private final long lends;
+		private final long attempts;
+		private final double seconds;
+
+		Result(long lends, long attempts, double seconds) {
+			this.lends = lends;
+			this.attempts = attempts;
+			this.seconds = seconds;
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.com.beatrizcarmo.LibraryManagementApplication;
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+
+// Teste de carga da aplicação inteira sem ferramentas externas nem Postgres: sobe o LibraryManagementApplication
+// com H2 em memória, cria um catálogo sintético e dispara uma mistura de leituras, empréstimos e atualizações
+// em /books, /users e /libraries a uma taxa fixa. Argumentos são repassados para o Spring, por exemplo
+// --library.threads.virtual=true.
+//
+//   java ... LoadTestHarness
+//
+// A taxa é de chegada (loop aberto): cada requisição sai no horário programado mesmo que as anteriores ainda
+// não tenham respondido, e a latência conta a partir desse horário. Assim uma fila no servidor aparece nos
+// percentis em vez de reduzir a carga. Configuração por -D:
+//
+//   load.rate                                 requisições por segundo (padrão 500)
+//   load.seconds / load.warmup                duração da medição e do aquecimento antes dela (padrão 60 e 10)
+//   load.books / load.users / load.libraries  tamanho do catálogo (padrão 10000, 1000 e 20)
+//   load.mix                                  pesos de leitura, empréstimo e atualização (padrão read=80,lend=10,update=10)
+//   load.seed                                 semente do catálogo e da sequência de requisições (padrão 42)
+//   load.hgrm-dir                             se informado, grava a distribuição completa de cada endpoint ali
+//
+// Empréstimos de livros já emprestados e de usuários punidos são recusados pela aplicação e entram na coluna
+// de falhas, assim como conflitos de versão entre uma atualização e um empréstimo do mesmo livro.
+public class LoadTestHarness {
+
+	// Latências em microssegundos, de 1 µs a 1 minuto com 3 dígitos significativos
+	private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+	private static final int SEED_BATCH_SIZE = 1000;
+	private static final double PUNISHED_USERS = 0.05;
+
+	private enum Endpoint {
+		BOOK_BY_ID("GET /books/{id}"), BOOK_PAGE("GET /books"), USER_BY_ID("GET /users/{id}"),
+		LIBRARY_BY_ID("GET /libraries/{id}"), LEND_BOOK("POST /books/{id}/lend"), UPDATE_BOOK("PUT /books/{id}");
+
+		private final String label;
+
+		Endpoint(String label) {
+			this.label = label;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int rate = Integer.getInteger("load.rate", 500);
+		Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 10));
+		Duration duration = Duration.ofSeconds(Long.getLong("load.seconds", 60));
+		long seed = Long.getLong("load.seed", 42);
+		int[] mix = parseMix(System.getProperty("load.mix", "read=80,lend=10,update=10"));
+		String hgrmDir = System.getProperty("load.hgrm-dir");
+
+		Path indexPath = Files.createTempDirectory("library-load-index");
+		ConfigurableApplicationContext context = start(args, indexPath);
+		ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+		try {
+			Random random = new Random(seed);
+			Catalog catalog = seed(context, random, Integer.getInteger("load.books", 10000),
+					Integer.getInteger("load.users", 1000), Integer.getInteger("load.libraries", 20));
+
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(callbacks)
+					.connectTimeout(Duration.ofSeconds(10)).build();
+			Workload workload = new Workload(client, URI.create("http://localhost:" + port), catalog, mix, random);
+
+			System.out.printf("Aquecendo por %ds a %d req/s...%n", warmup.getSeconds(), rate);
+			workload.run(rate, warmup);
+			workload.reset();
+
+			System.out.printf("Medindo por %ds a %d req/s...%n", duration.getSeconds(), rate);
+			workload.run(rate, duration);
+			workload.report(duration, hgrmDir);
+		} finally {
+			callbacks.shutdownNow();
+			context.close();
+			try (Stream<Path> files = Files.walk(indexPath)) {
+				files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	// Os argumentos de linha de comando têm precedência sobre o application.properties, e os do usuário
+	// vêm depois para poder sobrescrever os daqui. Também usado pelo LendScalingBenchmark
+	static ConfigurableApplicationContext start(String[] args, Path indexPath) {
+		// O restart do devtools roda a aplicação de novo em outra thread e repetiria os argumentos
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		List<String> arguments = new ArrayList<>(Arrays.asList(
+				"--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.r2dbc.url=r2dbc:h2:mem:///load;DB_CLOSE_DELAY=-1",
+				"--spring.r2dbc.username=sa",
+				"--spring.r2dbc.password=",
+				"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=warn",
+				// Empréstimos recusados são esperados e já contados como falha, sem stack trace no log
+				"--logging.level.org.apache.catalina.core.ContainerBase=off",
+				"--server.port=0",
+				"--library.search.index-path=" + indexPath));
+		arguments.addAll(Arrays.asList(args));
+
+		return new SpringApplicationBuilder(LibraryManagementApplication.class)
+				.run(arguments.toArray(new String[0]));
+	}
+
+	// Grava direto pelos repositórios, em lotes, e depois recarrega o ledger de disponibilidade e a cópia em
+	// colunas do catálogo, que foram carregados vazios quando a aplicação subiu
+	private static Catalog seed(ConfigurableApplicationContext context, Random random, int books, int users,
+			int libraries) {
+		LibraryRepository libraryRepository = context.getBean(LibraryRepository.class);
+		UserRepository userRepository = context.getBean(UserRepository.class);
+		BookRepository bookRepository = context.getBean(BookRepository.class);
+		TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		Catalog catalog = new Catalog();
+		long start = System.nanoTime();
+
+		List<Library> savedLibraries = transaction.execute(status -> {
+			List<Library> batch = new ArrayList<>();
+			for (int i = 0; i < libraries; i++)
+				batch.add(new Library(null, "Biblioteca " + i, "biblioteca" + i, "senha", "Rua " + i, 30000000 + i));
+			return libraryRepository.saveAll(batch);
+		});
+		savedLibraries.forEach(library -> catalog.libraryIds.add(library.getId()));
+
+		transaction.executeWithoutResult(status -> {
+			List<User> batch = new ArrayList<>();
+			for (int i = 0; i < users; i++)
+				batch.add(new User("Usuário " + i, "usuario" + i, "senha", random.nextDouble() < PUNISHED_USERS));
+			userRepository.saveAll(batch).forEach(user -> catalog.userIds.add(user.getId()));
+		});
+
+		LocalDate today = LocalDate.now();
+		for (int offset = 0; offset < books; offset += SEED_BATCH_SIZE) {
+			int first = offset;
+			int last = Math.min(books, offset + SEED_BATCH_SIZE);
+			transaction.executeWithoutResult(status -> {
+				List<Book> batch = new ArrayList<>(last - first);
+				for (int i = first; i < last; i++) {
+					Book book = new Book();
+					book.setName("Livro " + i);
+					book.setAuthor("Autor " + random.nextInt(500));
+					book.setDescription("Descrição do livro " + i);
+					book.setCost(1 + random.nextInt(20000) / 100f);
+					book.setYearEdition(today.minusDays(random.nextInt(365 * 50)));
+					book.setPublisher("Editora " + random.nextInt(50));
+					book.setIsBorrowed(false);
+					book.setLibrary(savedLibraries.get(random.nextInt(savedLibraries.size())));
+					batch.add(book);
+				}
+				bookRepository.saveAll(batch).forEach(book -> catalog.bookIds.add(book.getId()));
+			});
+		}
+
+		context.getBean(BookAvailabilityLedger.class).load();
+		context.getBean(CatalogSnapshot.class).load();
+		System.out.printf("Catálogo: %d livros, %d usuários e %d bibliotecas em %d ms%n", catalog.bookIds.size(),
+				catalog.userIds.size(), catalog.libraryIds.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return catalog;
+	}
+
+	// Formato read=80,lend=10,update=10; pesos que faltarem ficam zerados
+	private static int[] parseMix(String mix) {
+		int[] weights = new int[3];
+		for (String part : mix.split(",")) {
+			String[] entry = part.trim().split("=");
+			int weight = Integer.parseInt(entry[1].trim());
+			switch (entry[0].trim()) {
+			case "read":
+				weights[0] = weight;
+				break;
+			case "lend":
+				weights[1] = weight;
+				break;
+			case "update":
+				weights[2] = weight;
+				break;
+			default:
+				throw new IllegalArgumentException("load.mix: operação desconhecida " + entry[0]);
+			}
+		}
+		if (weights[0] + weights[1] + weights[2] <= 0)
+			throw new IllegalArgumentException("load.mix precisa de pelo menos um peso positivo");
+		return weights;
+	}
+
+	private static class Catalog {
+
+		private final List<UUID> bookIds = new ArrayList<>();
+		private final List<UUID> userIds = new ArrayList<>();
+		private final List<UUID> libraryIds = new ArrayList<>();
+	}
+
+	private static class Stats {
+
+		private final Recorder recorder = new Recorder(HIGHEST_LATENCY, 3);
+		private final LongAdder ok = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+
+		void record(long latencyNanos, boolean success) {
+			recorder.recordValue(Math.min(HIGHEST_LATENCY, Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos))));
+			(success ? ok : failed).increment();
+		}
+
+		void reset() {
+			recorder.reset();
+			ok.reset();
+			failed.reset();
+		}
+	}
+
+	private static class Workload {
+
+		private final HttpClient client;
+		private final URI base;
+		private final Catalog catalog;
+		private final int[] mix;
+		private final Random random;
+		private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private long sequence;
+
+		Workload(HttpClient client, URI base, Catalog catalog, int[] mix, Random random) {
+			this.client = client;
+			this.base = base;
+			this.catalog = catalog;
+			this.mix = mix;
+			this.random = random;
+			for (Endpoint endpoint : Endpoint.values())
+				stats.put(endpoint, new Stats());
+		}
+
+		// As requisições são montadas e disparadas por uma única thread, no horário programado de cada uma
+		void run(int rate, Duration duration) throws InterruptedException {
+			long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+			long start = System.nanoTime();
+			long end = start + duration.toNanos();
+
+			for (long i = 0;; i++) {
+				long intended = start + i * interval;
+				if (intended >= end)
+					break;
+
+				long wait = intended - System.nanoTime();
+				if (wait > 0)
+					LockSupport.parkNanos(wait);
+
+				send(intended);
+			}
+
+			// Espera as respostas que ainda estão a caminho, no máximo um minuto
+			long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+			while (inFlight.get() > 0 && System.nanoTime() < deadline)
+				Thread.sleep(10);
+		}
+
+		void reset() {
+			stats.values().forEach(Stats::reset);
+		}
+
+		void report(Duration duration, String hgrmDir) throws IOException {
+			double seconds = duration.toNanos() / 1e9;
+			Histogram total = new Histogram(HIGHEST_LATENCY, 3);
+			long totalOk = 0;
+			long totalFailed = 0;
+
+			System.out.printf("%-22s %9s %9s %9s %10s %9s %9s %9s %9s%n", "endpoint", "requests", "ok", "failed",
+					"req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+			for (Map.Entry<Endpoint, Stats> entry : stats.entrySet()) {
+				Histogram histogram = entry.getValue().recorder.getIntervalHistogram();
+				long ok = entry.getValue().ok.sum();
+				long failed = entry.getValue().failed.sum();
+				print(entry.getKey().label, histogram, ok, failed, seconds);
+				total.add(histogram);
+				totalOk += ok;
+				totalFailed += failed;
+
+				if (hgrmDir != null)
+					write(Paths.get(hgrmDir, entry.getKey().name().toLowerCase() + ".hgrm"), histogram);
+			}
+			print("total", total, totalOk, totalFailed, seconds);
+
+			if (hgrmDir != null)
+				write(Paths.get(hgrmDir, "total.hgrm"), total);
+		}
+
+		private void print(String label, Histogram histogram, long ok, long failed, double seconds) {
+			System.out.printf("%-22s %9d %9d %9d %10.1f %9.2f %9.2f %9.2f %9.2f%n", label, ok + failed, ok, failed,
+					(ok + failed) / seconds, histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0);
+		}
+
+		// Formato .hgrm do HdrHistogram, em milissegundos, para abrir no HdrHistogram plotter
+		private void write(Path path, Histogram histogram) throws IOException {
+			Files.createDirectories(path.getParent());
+			try (PrintStream out = new PrintStream(Files.newOutputStream(path))) {
+				histogram.outputPercentileDistribution(out, 1000.0);
+			}
+		}
+
+		private void send(long intended) {
+			Endpoint endpoint = nextEndpoint();
+			HttpRequest request = request(endpoint);
+			Stats endpointStats = stats.get(endpoint);
+
+			inFlight.incrementAndGet();
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				endpointStats.record(System.nanoTime() - intended, error == null && response.statusCode() < 300);
+				inFlight.decrementAndGet();
+			});
+		}
+
+		// As leituras se dividem entre livro por id (50%), página de livros (20%), usuário (15%) e biblioteca (15%)
+		private Endpoint nextEndpoint() {
+			int pick = random.nextInt(mix[0] + mix[1] + mix[2]);
+			if (pick >= mix[0] + mix[1])
+				return Endpoint.UPDATE_BOOK;
+			if (pick >= mix[0])
+				return Endpoint.LEND_BOOK;
+
+			int read = random.nextInt(100);
+			if (read < 50)
+				return Endpoint.BOOK_BY_ID;
+			if (read < 70)
+				return Endpoint.BOOK_PAGE;
+			if (read < 85)
+				return Endpoint.USER_BY_ID;
+			return Endpoint.LIBRARY_BY_ID;
+		}
+
+		private HttpRequest request(Endpoint endpoint) {
+			switch (endpoint) {
+			case BOOK_BY_ID:
+				return get("/books/" + pick(catalog.bookIds));
+			case BOOK_PAGE:
+				return get("/books?size=20");
+			case USER_BY_ID:
+				return get("/users/" + pick(catalog.userIds));
+			case LIBRARY_BY_ID:
+				return get("/libraries/" + pick(catalog.libraryIds));
+			case LEND_BOOK:
+				return builder("/books/" + pick(catalog.bookIds) + "/lend?userId=" + pick(catalog.userIds))
+						.POST(HttpRequest.BodyPublishers.noBody()).build();
+			case UPDATE_BOOK:
+				String body = String.format("{\"name\":\"Livro %d\",\"author\":\"Autor %d\",\"description\":\"Atualizado\",\"cost\":%d.5}",
+						++sequence, random.nextInt(500), 1 + random.nextInt(200));
+				return builder("/books/" + pick(catalog.bookIds)).header("Content-Type", "application/json")
+						.PUT(HttpRequest.BodyPublishers.ofString(body)).build();
+			default:
+				throw new IllegalStateException(endpoint.name());
+			}
+		}
+
+		private HttpRequest get(String path) {
+			return builder(path).GET().build();
+		}
+
+		private HttpRequest.Builder builder(String path) {
+			return HttpRequest.newBuilder(base.resolve(path)).timeout(Duration.ofSeconds(60));
+		}
+
+		private UUID pick(List<UUID> ids) {
+			return ids.get(random.nextInt(ids.size()));
+		}
+	}
+}
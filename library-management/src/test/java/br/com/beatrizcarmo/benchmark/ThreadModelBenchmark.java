@@ -0,0 +1,154 @@
+package br.com.beatrizcarmo.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compara o modelo de threads do Tomcat com o modo de virtual threads (library.threads.virtual=true).
+// Suba a aplicação em um dos modos, rode este main apontando para um endpoint que vai ao banco e repita no
+// outro modo:
+//
+//   java ... ThreadModelBenchmark http://localhost:8080/books/<id> 1000 2000 5000 10000
+//
+// Cada cliente é um loop fechado (manda a próxima requisição quando a anterior responde), então a vazão mostra
+// quantas requisições o servidor atende com aquela concorrência. A duração de cada rodada vem de
+// -Dbenchmark.seconds (padrão 30). Com 10 mil clientes são 10 mil conexões abertas: aumente o ulimit -n dos
+// dois lados e o server.tomcat.max-connections da aplicação.
+public class ThreadModelBenchmark {
+
+	private static final int[] DEFAULT_CLIENTS = { 1000, 2000, 5000, 10000 };
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Uso: ThreadModelBenchmark <url> [clientes...]");
+			System.exit(1);
+		}
+
+		URI uri = URI.create(args[0]);
+		int[] clients = args.length > 1 ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+				: DEFAULT_CLIENTS;
+		Duration duration = Duration.ofSeconds(Long.getLong("benchmark.seconds", 30));
+
+		ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(callbacks)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+
+		try {
+			// Aquecimento: JIT, pool de conexões do banco e caches da aplicação
+			run(client, uri, 100, Duration.ofSeconds(10));
+
+			System.out.printf("%8s %12s %10s %10s %10s %8s%n", "clients", "req/s", "p50 ms", "p99 ms", "max ms",
+					"errors");
+			for (int concurrency : clients) {
+				Result result = run(client, uri, concurrency, duration);
+				System.out.printf("%8d %12.0f %10.1f %10.1f %10.1f %8d%n", concurrency,
+						result.requests / (duration.toNanos() / 1e9), result.percentile(50) / 1e6,
+						result.percentile(99) / 1e6, result.percentile(100) / 1e6, result.errors);
+			}
+		} finally {
+			callbacks.shutdownNow();
+		}
+	}
+
+	private static Result run(HttpClient client, URI uri, int concurrency, Duration duration) {
+		HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+		long deadline = System.nanoTime() + duration.toNanos();
+		AtomicLong errors = new AtomicLong();
+
+		Client[] loops = new Client[concurrency];
+		CompletableFuture<?>[] finished = new CompletableFuture<?>[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			loops[i] = new Client(client, request, deadline, errors);
+			finished[i] = loops[i].start();
+		}
+		CompletableFuture.allOf(finished).join();
+
+		// Cada cliente grava só no próprio array, então a junção é feita no fim
+		int total = 0;
+		for (Client loop : loops)
+			total += loop.count;
+
+		long[] latencies = new long[total];
+		int offset = 0;
+		for (Client loop : loops) {
+			System.arraycopy(loop.latencies, 0, latencies, offset, loop.count);
+			offset += loop.count;
+		}
+		Arrays.sort(latencies);
+
+		return new Result(latencies, errors.get());
+	}
+
+	private static class Client {
+
+		private final HttpClient client;
+		private final HttpRequest request;
+		private final long deadline;
+		private final AtomicLong errors;
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+		private long[] latencies = new long[1024];
+		private int count;
+
+		Client(HttpClient client, HttpRequest request, long deadline, AtomicLong errors) {
+			this.client = client;
+			this.request = request;
+			this.deadline = deadline;
+			this.errors = errors;
+		}
+
+		CompletableFuture<Void> start() {
+			next();
+			return done;
+		}
+
+		private void next() {
+			if (System.nanoTime() >= deadline) {
+				done.complete(null);
+				return;
+			}
+
+			long start = System.nanoTime();
+			// Async para não empilhar chamadas quando a resposta falha na hora (conexão recusada, por exemplo)
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, error) -> {
+				if (error != null || response.statusCode() >= 400)
+					errors.incrementAndGet();
+				else
+					record(System.nanoTime() - start);
+				next();
+			}, client.executor().get());
+		}
+
+		private void record(long latency) {
+			if (count == latencies.length)
+				latencies = Arrays.copyOf(latencies, count * 2);
+			latencies[count++] = latency;
+		}
+	}
+
+	private static class Result {
+
+		private final long[] latencies;
+		private final long requests;
+		private final long errors;
+
+		Result(long[] latencies, long errors) {
+			this.latencies = latencies;
+			this.requests = latencies.length;
+			this.errors = errors;
+		}
+
+		long percentile(double percentile) {
+			if (latencies.length == 0)
+				return 0;
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package br.com.beatrizcarmo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import br.com.beatrizcarmo.dto.BookDto;
+
+public class BookDtoCacheTest {
+
+	public BookDtoCache cache = new BookDtoCache(new ObjectMapper().registerModule(new JavaTimeModule()), 100);
+
+	ExecutorService otherThread = Executors.newSingleThreadExecutor();
+	UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+
+	@After
+	public void tearDown() {
+		otherThread.shutdownNow();
+	}
+
+	@Test
+	public void get_shouldNotBlockOtherThreadsWhileLoading() {
+		BookDto result = cache.get(bookId, key -> {
+			try {
+				// Com a carga dentro do cache, esta invalidação ficaria esperando a trava até o timeout
+				otherThread.submit(() -> cache.invalidate(key)).get(5, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return bookDto("Livro");
+		});
+
+		assertThat(result.name).isEqualTo("Livro");
+	}
+
+	@Test
+	public void get_shouldDiscardAValueLoadedWhileTheBookWasInvalidated() {
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get(bookId, key -> {
+			loads.incrementAndGet();
+			cache.invalidate(key);
+			return bookDto("Livro antigo");
+		});
+		BookDto result = cache.get(bookId, key -> {
+			loads.incrementAndGet();
+			return bookDto("Livro novo");
+		});
+
+		assertThat(result.name).isEqualTo("Livro novo");
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	public void get_shouldReturnACopyOfTheCachedBook() {
+		cache.get(bookId, key -> bookDto("Livro"));
+
+		BookDto first = cache.get(bookId, key -> bookDto("Outro"));
+		first.name = "Alterado";
+		BookDto second = cache.get(bookId, key -> bookDto("Outro"));
+
+		assertThat(second.name).isEqualTo("Livro");
+	}
+
+	private BookDto bookDto(String name) {
+		BookDto dto = new BookDto();
+		dto.id = bookId.toString();
+		dto.name = name;
+		return dto;
+	}
+}
@@ -0,0 +1,121 @@
+package br.com.beatrizcarmo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.BookCatalogEntry;
+
+public class CatalogSnapshotTest {
+
+	public CatalogSnapshot snapshot = new CatalogSnapshot();
+
+	UUID bookId1 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee61");
+	UUID bookId2 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+	UUID bookId3 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+
+	@Test
+	public void aggregates_shouldMatchTheBooksInTheSnapshot() {
+		snapshot.put(List.of(book(bookId1, 10f, true, "Machado de Assis", "Garnier"),
+				book(bookId2, 25.5f, false, "Jorge Amado", "Record"),
+				book(bookId3, null, true, "Machado de Assis", "Garnier")));
+
+		assertThat(snapshot.size()).isEqualTo(3);
+		assertThat(snapshot.countBorrowed()).isEqualTo(2);
+		assertThat(snapshot.countWithoutCost()).isEqualTo(1);
+		assertThat(snapshot.totalCost()).isEqualTo(35.5);
+		assertThat(snapshot.maxCost()).isEqualTo(25.5f);
+		assertThat(snapshot.countByAuthor("Machado de Assis")).isEqualTo(2);
+		assertThat(snapshot.countByAuthor("Clarice Lispector")).isZero();
+		assertThat(snapshot.totalCostByPublisher("Garnier")).isEqualTo(10.0);
+	}
+
+	@Test
+	public void put_shouldReplaceTheColumnsOfABookAlreadyInTheSnapshot() {
+		snapshot.put(book(bookId1, 10f, false, "Machado de Assis", "Garnier"));
+
+		snapshot.put(book(bookId1, 40f, true, "Jorge Amado", "Record"));
+
+		assertThat(snapshot.size()).isEqualTo(1);
+		assertThat(snapshot.countBorrowed()).isEqualTo(1);
+		assertThat(snapshot.totalCost()).isEqualTo(40.0);
+		assertThat(snapshot.countByAuthor("Machado de Assis")).isZero();
+		assertThat(snapshot.countByAuthor("Jorge Amado")).isEqualTo(1);
+	}
+
+	@Test
+	public void remove_shouldMoveTheLastBookToTheFreeSlot() {
+		snapshot.put(List.of(book(bookId1, 10f, false, "A", "X"), book(bookId2, 20f, false, "B", "Y"),
+				book(bookId3, 30f, true, "C", "Z")));
+
+		snapshot.remove(bookId1);
+		// O terceiro livro foi para a primeira posição e continua sendo encontrado pelo id
+		snapshot.setBorrowed(bookId3, false);
+		snapshot.remove(UUID.randomUUID());
+
+		assertThat(snapshot.size()).isEqualTo(2);
+		assertThat(snapshot.countBorrowed()).isZero();
+		assertThat(snapshot.totalCost()).isEqualTo(50.0);
+		assertThat(snapshot.countByAuthor("A")).isZero();
+		assertThat(snapshot.countByAuthor("C")).isEqualTo(1);
+	}
+
+	@Test
+	public void put_shouldGrowPastTheInitialCapacity() {
+		for (int i = 0; i < 5000; i++)
+			snapshot.put(UUID.randomUUID(), 1f, i % 2 == 0, "Autor " + (i % 10), null);
+
+		assertThat(snapshot.size()).isEqualTo(5000);
+		assertThat(snapshot.countBorrowed()).isEqualTo(2500);
+		assertThat(snapshot.totalCost()).isEqualTo(5000.0);
+		assertThat(snapshot.countByAuthor("Autor 3")).isEqualTo(500);
+	}
+
+	@Test
+	public void start_shouldLoadBeforeTheWebServer() {
+		BookRepository bookRepository = mock(BookRepository.class);
+		BookCatalogEntry entry = mock(BookCatalogEntry.class);
+		when(entry.getId()).thenReturn(bookId1);
+		when(entry.getCost()).thenReturn(10f);
+		when(entry.getIsBorrowed()).thenReturn(true);
+		when(bookRepository.streamCatalog()).thenReturn(Stream.of(entry));
+		ReflectionTestUtils.setField(snapshot, "bookRepository", bookRepository);
+		ReflectionTestUtils.setField(snapshot, "transactionManager", mock(PlatformTransactionManager.class));
+
+		snapshot.start();
+
+		assertThat(snapshot.isRunning()).isTrue();
+		assertThat(snapshot.getPhase()).isLessThan(Integer.MAX_VALUE - 1);
+		assertThat(snapshot.size()).isEqualTo(1);
+		assertThat(snapshot.countBorrowed()).isEqualTo(1);
+	}
+
+	@Test
+	public void releaseAfterCommit_withoutTransaction_shouldReleaseRightAway() {
+		snapshot.put(List.of(book(bookId1, 10f, true, "A", "X"), book(bookId2, 20f, true, "B", "Y")));
+
+		snapshot.releaseAfterCommit(List.of(bookId1));
+
+		assertThat(snapshot.countBorrowed()).isEqualTo(1);
+	}
+
+	private Book book(UUID id, Float cost, Boolean isBorrowed, String author, String publisher) {
+		Book book = new Book();
+		book.setId(id);
+		book.setCost(cost);
+		book.setIsBorrowed(isBorrowed);
+		book.setAuthor(author);
+		book.setPublisher(publisher);
+		return book;
+	}
+}
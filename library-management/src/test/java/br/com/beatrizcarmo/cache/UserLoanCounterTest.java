@@ -0,0 +1,77 @@
+package br.com.beatrizcarmo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.UserLoanCount;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserLoanCounterTest {
+
+	@InjectMocks
+	public UserLoanCounter counter;
+
+	@Mock
+	public BookRepository bookRepository;
+	@Mock
+	public PlatformTransactionManager transactionManager;
+
+	UUID userId1 = UUID.fromString("3b8e4a2c-1d4b-4f7a-9c39-0e5a7b1d2f01");
+	UUID userId2 = UUID.fromString("3b8e4a2c-1d4b-4f7a-9c39-0e5a7b1d2f02");
+
+	@Test
+	public void load_shouldKeepTheLoansRegisteredBeforeIt() {
+		when(bookRepository.streamLoanCounts()).thenReturn(Stream.of(loanCount(userId1, 2L), loanCount(userId2, 1L)));
+		// Empréstimo confirmado depois que a consulta começou: não está na contagem do banco
+		counter.increment(userId1);
+
+		counter.load();
+
+		assertThat(counter.get(userId1)).isEqualTo(3);
+		assertThat(counter.get(userId2)).isEqualTo(1);
+	}
+
+	@Test
+	public void start_shouldLoadBeforeTheWebServer() {
+		when(bookRepository.streamLoanCounts()).thenReturn(Stream.of(loanCount(userId1, 2L)));
+
+		counter.start();
+
+		assertThat(counter.isRunning()).isTrue();
+		assertThat(counter.getPhase()).isLessThan(Integer.MAX_VALUE - 1);
+		assertThat(counter.get(userId1)).isEqualTo(2);
+	}
+
+	@Test
+	public void decrement_shouldRemoveTheUserWithoutLoans() {
+		counter.increment(userId1);
+
+		counter.decrement(userId1);
+		counter.decrement(userId1);
+
+		assertThat(counter.get(userId1)).isZero();
+	}
+
+	private UserLoanCount loanCount(UUID userId, Long loans) {
+		return new UserLoanCount() {
+			public UUID getUserId() {
+				return userId;
+			}
+
+			public Long getLoans() {
+				return loans;
+			}
+		};
+	}
+}
@@ -0,0 +1,36 @@
+package br.com.beatrizcarmo.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+public class VirtualThreadsConfigTest {
+
+	private static final boolean VIRTUAL_THREADS_SUPPORTED = Runtime.version().feature() >= 21;
+
+	@Test
+	public void newVirtualThreadExecutor_shouldRunTheTaskOnANamedVirtualThread() throws Exception {
+		assumeTrue(VIRTUAL_THREADS_SUPPORTED);
+		ExecutorService executor = VirtualThreadsConfig.newVirtualThreadExecutor("teste-");
+
+		Thread thread = executor.submit(Thread::currentThread).get();
+		executor.shutdown();
+
+		assertThat(VirtualThreadsConfig.isVirtual(thread)).isTrue();
+		assertThat(thread.getName()).isEqualTo("teste-0");
+	}
+
+	@Test
+	public void newVirtualThreadExecutor_shouldExplainThatItNeedsJava21() {
+		assumeTrue(!VIRTUAL_THREADS_SUPPORTED);
+
+		Throwable exception = catchThrowable(() -> VirtualThreadsConfig.newVirtualThreadExecutor("teste-"));
+
+		assertThat(exception).isInstanceOf(IllegalStateException.class).hasMessageContaining("Java 21");
+		assertThat(VirtualThreadsConfig.isVirtual(Thread.currentThread())).isFalse();
+	}
+}
@@ -0,0 +1,375 @@
+package br.com.beatrizcarmo.controller;
+
+import static br.com.beatrizcarmo.sql.SqlStatementCounter.assertCounts;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.LibraryDto;
+import br.com.beatrizcarmo.dto.UserDto;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.search.BookSearchIndex;
+import br.com.beatrizcarmo.sql.SqlStatementCounter;
+
+// Quantos SELECT, INSERT, UPDATE e DELETE cada endpoint faz. Os números não podem crescer com a quantidade de
+// livros: se um deles subir, provavelmente alguma associação voltou a ser carregada um registro por vez (N+1).
+// O cache de segundo nível é limpo antes de cada teste para medir as idas ao banco sem cache.
+@SpringBootTest(properties = {
+		"library.search.index-path=${java.io.tmpdir}/library-management/index-${random.uuid}",
+		SqlStatementCounter.PROPERTY })
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@RunWith(SpringRunner.class)
+public class SqlStatementCountTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	BookRepository bookRepository;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@Autowired
+	LibraryRepository libraryRepository;
+
+	@Autowired
+	BookSearchIndex bookSearchIndex;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	private Library library;
+	private Library otherLibrary;
+	private User reader;
+	private User otherReader;
+	private Book available;
+	private Book overdue;
+
+	// Quatro livros espalhados por duas bibliotecas e dois usuários, para o N+1 aparecer nas listagens
+	@Before
+	public void setUp() {
+		library = libraryRepository.save(library("Biblioteca Central"));
+		otherLibrary = libraryRepository.save(library("Biblioteca do Bairro"));
+		reader = userRepository.save(user("leitor"));
+		otherReader = userRepository.save(user("outro.leitor"));
+
+		available = book("Dom Casmurro", library, null);
+		overdue = book("Memorias Postumas de Bras Cubas", library, reader);
+		List<Book> books = bookRepository.saveAll(List.of(available, overdue,
+				book("Capitaes da Areia", otherLibrary, otherReader), book("Iracema", otherLibrary, null)));
+		bookSearchIndex.index(books);
+
+		startCounting();
+	}
+
+	@After
+	public void tearDown() {
+		bookRepository.deleteAll();
+		userRepository.deleteAll();
+		libraryRepository.deleteAll();
+	}
+
+	@Test
+	public void addBook_shouldOnlyInsertTheBook() throws Exception {
+		BookDto dto = bookDto("O Cortico");
+		dto.idLibrary = library.getId().toString();
+		dto.idUser = reader.getId().toString();
+
+		perform(post("/books").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsBytes(dto)));
+
+		assertCounts(0, 1, 0, 0);
+	}
+
+	@Test
+	public void importCsv_shouldLoadTheAssociationsOnceAndInsertInOneBatch() throws Exception {
+		String csv = "name,author,idLibrary,idUser\n"
+				+ "O Cortico,Aluisio Azevedo," + library.getId() + "," + reader.getId() + "\n"
+				+ "Senhora,Jose de Alencar," + otherLibrary.getId() + "," + reader.getId() + "\n"
+				+ "A Moreninha,Joaquim Manuel de Macedo," + library.getId() + ",\n";
+
+		perform(post("/books/import").contentType("text/csv").content(csv));
+
+		assertCounts(2, 1, 0, 0);
+	}
+
+	@Test
+	public void importNdjson_shouldLoadTheAssociationsOnceAndInsertInOneBatch() throws Exception {
+		BookDto first = bookDto("O Cortico");
+		first.idLibrary = library.getId().toString();
+		first.idUser = reader.getId().toString();
+		BookDto second = bookDto("Senhora");
+		second.idLibrary = otherLibrary.getId().toString();
+
+		String ndjson = objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n";
+		perform(post("/books/import").contentType("application/x-ndjson").content(ndjson));
+
+		assertCounts(2, 1, 0, 0);
+	}
+
+	@Test
+	public void getBooks_shouldReadThePageWithOneSelect() throws Exception {
+		perform(get("/books").param("size", "10"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void getBooks_sortedByName_shouldReadThePageWithOneSelect() throws Exception {
+		perform(get("/books").param("size", "2").param("sort", "name"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void getBooks_sortedByName_shouldReadTheBooksWithoutNameOnlyOnTheLastNamedPage() throws Exception {
+		perform(get("/books").param("size", "10").param("sort", "name"));
+
+		assertCounts(2, 0, 0, 0);
+	}
+
+	@Test
+	public void exportBooks_shouldStreamTheCatalogWithOneSelect() throws Exception {
+		perform(get("/books/export"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void searchBooks_shouldLoadTheHitsWithOneSelect() throws Exception {
+		perform(get("/books/search").param("q", "casmurro"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void overdueUsers_shouldUseOneSelectPerPage() throws Exception {
+		perform(get("/books/overdue"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void overdueUsers_top_shouldUseOneSelect() throws Exception {
+		perform(get("/books/overdue").param("top", "10"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void catalogStats_shouldNotQueryTheDatabase() throws Exception {
+		perform(get("/books/stats").param("author", "Machado de Assis").param("publisher", "Garnier"));
+
+		assertCounts(0, 0, 0, 0);
+	}
+
+	@Test
+	public void loanCounts_shouldNotQueryTheDatabase() throws Exception {
+		perform(get("/books/loans").param("userIds", reader.getId() + "," + otherReader.getId()));
+
+		assertCounts(0, 0, 0, 0);
+	}
+
+	@Test
+	public void getBookById_shouldReadOnlyTheBook() throws Exception {
+		perform(get("/books/{id}", overdue.getId()));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void updateBook_shouldReadAndUpdateOnlyTheBook() throws Exception {
+		BookDto dto = bookDto("Dom Casmurro - edicao revista");
+
+		perform(put("/books/{id}", overdue.getId()).contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(dto)));
+
+		assertCounts(1, 0, 1, 0);
+	}
+
+	@Test
+	public void lendBook_shouldReadTheBookAndTheUserAndUpdateTheBook() throws Exception {
+		perform(post("/books/{id}/lend", available.getId()).param("userId", otherReader.getId().toString()));
+
+		assertCounts(2, 0, 1, 0);
+	}
+
+	@Test
+	public void deleteBook_shouldReadAndDeleteOnlyTheBook() throws Exception {
+		perform(delete("/books/{id}", available.getId()));
+
+		assertCounts(1, 0, 0, 1);
+	}
+
+	@Test
+	public void addUser_shouldOnlyInsertTheUser() throws Exception {
+		perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(userDto("novo.leitor"))));
+
+		assertCounts(0, 1, 0, 0);
+	}
+
+	@Test
+	public void getAllUsers_shouldUseOneSelect() throws Exception {
+		perform(get("/users"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void getUserById_shouldUseOneSelect() throws Exception {
+		perform(get("/users/{id}", reader.getId()));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void updateUser_shouldReadAndUpdateOnlyTheUser() throws Exception {
+		perform(put("/users/{id}", reader.getId()).contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(userDto("leitor.renomeado"))));
+
+		assertCounts(1, 0, 1, 0);
+	}
+
+	@Test
+	public void deleteUser_shouldReadAndDeleteOnlyTheUser() throws Exception {
+		User withoutBooks = userRepository.save(user("sem.livros"));
+		startCounting();
+
+		perform(delete("/users/{id}", withoutBooks.getId()));
+
+		assertCounts(1, 0, 0, 1);
+	}
+
+	@Test
+	public void addLibrary_shouldOnlyInsertTheLibrary() throws Exception {
+		perform(post("/libraries").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(libraryDto("Biblioteca Nova"))));
+
+		assertCounts(0, 1, 0, 0);
+	}
+
+	@Test
+	public void getAllLibraries_shouldUseOneSelect() throws Exception {
+		perform(get("/libraries"));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void getLibraryById_shouldUseOneSelect() throws Exception {
+		perform(get("/libraries/{id}", library.getId()));
+
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void updateLibrary_shouldReadAndUpdateOnlyTheLibrary() throws Exception {
+		perform(put("/libraries/{id}", library.getId()).contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsBytes(libraryDto("Biblioteca Central Renomeada"))));
+
+		assertCounts(1, 0, 1, 0);
+	}
+
+	@Test
+	public void deleteLibrary_shouldReadTheLibraryAndDeleteItWithItsUsers() throws Exception {
+		Library withoutBooks = libraryRepository.save(library("Biblioteca Vazia"));
+		startCounting();
+
+		perform(delete("/libraries/{id}", withoutBooks.getId()));
+
+		// O segundo DELETE limpa a tabela de ligação library_users
+		assertCounts(1, 0, 0, 2);
+	}
+
+	private void startCounting() {
+		entityManagerFactory.getCache().evictAll();
+		SqlStatementCounter.reset();
+	}
+
+	private void perform(RequestBuilder request) throws Exception {
+		mockMvc.perform(request).andExpect(status().isOk());
+	}
+
+	private Library library(String name) {
+		Library library = new Library();
+		library.setName(name);
+		library.setContact(9999);
+		return library;
+	}
+
+	private User user(String username) {
+		User user = new User();
+		user.setName(username);
+		user.setUsername(username);
+		return user;
+	}
+
+	private Book book(String name, Library library, User user) {
+		Book book = new Book();
+		book.setName(name);
+		book.setAuthor("Autor");
+		book.setCost(30f);
+		book.setYearEdition(LocalDate.of(1900, 1, 1));
+		book.setLibrary(library);
+		book.setUser(user);
+		book.setIsBorrowed(user != null);
+		book.setDevolutionDate(user == null ? null : LocalDate.now().minusDays(10));
+		return book;
+	}
+
+	private BookDto bookDto(String name) {
+		BookDto dto = new BookDto();
+		dto.name = name;
+		dto.author = "Autor";
+		dto.cost = 25f;
+		dto.isBorrowed = false;
+		return dto;
+	}
+
+	private UserDto userDto(String username) {
+		UserDto dto = new UserDto();
+		dto.name = username;
+		dto.username = username;
+		return dto;
+	}
+
+	private LibraryDto libraryDto(String name) {
+		LibraryDto dto = new LibraryDto();
+		dto.name = name;
+		dto.contact = 9999;
+		return dto;
+	}
+}
@@ -0,0 +1,146 @@
+package br.com.beatrizcarmo.dto.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookMapperTest {
+
+	@InjectMocks
+	public BookMapper mapper;
+
+	@Mock
+	public LibraryRepository libraryRepository;
+	@Mock
+	public UserRepository userRepository;
+
+	UUID libraryId = UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07");
+	UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+
+	@Test
+	public void toEntity_shouldUseReferencesInsteadOfQueries() {
+		Library library = new Library();
+		User user = new User();
+		when(libraryRepository.getOne(libraryId)).thenReturn(library);
+		when(userRepository.getOne(userId)).thenReturn(user);
+
+		Book result = mapper.toEntity(bookDto("Livro", libraryId, userId));
+
+		assertThat(result.getLibrary()).isSameAs(library);
+		assertThat(result.getUser()).isSameAs(user);
+		verify(libraryRepository, never()).findById(any());
+		verify(userRepository, never()).findById(any());
+	}
+
+	@Test
+	public void toEntity_withoutIdsShouldNotResolveAssociations() {
+		Book result = mapper.toEntity(bookDto("Livro", null, null));
+
+		assertThat(result.getId()).isNull();
+		assertThat(result.getLibrary()).isNull();
+		assertThat(result.getUser()).isNull();
+	}
+
+	@Test
+	public void toEntities_shouldLoadTheDistinctAssociationsOnce() {
+		Library library = new Library();
+		library.setId(libraryId);
+		User user = new User();
+		user.setId(userId);
+		List<BookDto> dtos = new ArrayList<>();
+		dtos.add(bookDto("Livro 1", libraryId, userId));
+		dtos.add(bookDto("Livro 2", libraryId, null));
+		when(libraryRepository.findAllById(Set.of(libraryId))).thenReturn(List.of(library));
+		when(userRepository.findAllById(Set.of(userId))).thenReturn(List.of(user));
+
+		List<Book> result = mapper.toEntities(dtos);
+
+		assertThat(result).extracting(Book::getName).containsExactly("Livro 1", "Livro 2");
+		assertThat(result.get(1).getLibrary()).isSameAs(library);
+		assertThat(result.get(0).getUser()).isSameAs(user);
+		assertThat(result.get(1).getUser()).isNull();
+	}
+
+	@Test
+	public void toDto_shouldReuseTheIdsOfRepeatedAssociations() {
+		Library library = new Library();
+		library.setId(libraryId);
+
+		List<BookDto> result = mapper.toDto(List.of(book("Livro 1", library, null), book("Livro 2", library, null)));
+
+		assertThat(result).extracting(dto -> dto.idLibrary).containsOnly(libraryId.toString());
+		assertThat(result.get(0).idLibrary).isSameAs(result.get(1).idLibrary);
+	}
+
+	@Test
+	public void writeTo_shouldWriteTheSameJsonAsTheDto() throws IOException {
+		// Mesma configuração de datas do ObjectMapper do Spring Boot
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+				.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		Library library = new Library();
+		library.setId(libraryId);
+		User user = new User();
+		user.setId(userId);
+		Book complete = book("Livro \"1\"", library, user);
+		complete.setDescription("Descrição");
+		complete.setCost(10.5f);
+		complete.setYearEdition(LocalDate.of(2019, 3, 1));
+		complete.setPublisher("Editora");
+		complete.setIsBorrowed(true);
+		List<Book> books = List.of(complete, book("Livro 2", null, null));
+
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+			mapper.writeTo(books, generator);
+		}
+
+		assertThat(json.toString()).isEqualTo(objectMapper.writeValueAsString(mapper.toDto(books)));
+	}
+
+	private Book book(String name, Library library, User user) {
+		Book book = new Book();
+		book.setId(UUID.randomUUID());
+		book.setName(name);
+		book.setLibrary(library);
+		book.setUser(user);
+		return book;
+	}
+
+	private BookDto bookDto(String name, UUID idLibrary, UUID idUser) {
+		BookDto dto = new BookDto();
+		dto.name = name;
+		dto.author = "Rafael";
+		dto.idLibrary = idLibrary == null ? null : idLibrary.toString();
+		dto.idUser = idUser == null ? null : idUser.toString();
+		return dto;
+	}
+}
@@ -0,0 +1,40 @@
+package br.com.beatrizcarmo.dto.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.beatrizcarmo.models.Library;
+
+public class LibraryMapperTest {
+
+	public LibraryMapper mapper = new LibraryMapper();
+
+	@Test
+	public void writeTo_shouldWriteTheSameJsonAsTheDto() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		Library library = new Library();
+		library.setId(UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07"));
+		library.setName("Biblioteca");
+		library.setContact(12345678);
+		Library withoutContact = new Library();
+		withoutContact.setId(UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba08"));
+		withoutContact.setName("Biblioteca sem contato");
+		List<Library> libraries = List.of(library, withoutContact);
+
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+			mapper.writeTo(libraries, generator);
+		}
+
+		assertThat(json.toString()).isEqualTo(objectMapper.writeValueAsString(mapper.toDto(libraries)));
+	}
+}
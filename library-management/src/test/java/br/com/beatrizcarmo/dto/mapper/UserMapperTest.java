@@ -0,0 +1,37 @@
+package br.com.beatrizcarmo.dto.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.beatrizcarmo.models.User;
+
+public class UserMapperTest {
+
+	public UserMapper mapper = new UserMapper();
+
+	@Test
+	public void writeTo_shouldWriteTheSameJsonAsTheDto() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		User user = new User("Beatriz", "beatriz", "senha", true);
+		user.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64"));
+		User withoutName = new User(null, "rafael", null, false);
+		withoutName.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee65"));
+		List<User> users = List.of(user, withoutName);
+
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+			mapper.writeTo(users, generator);
+		}
+
+		assertThat(json.toString()).isEqualTo(objectMapper.writeValueAsString(mapper.toDto(users)));
+	}
+}
@@ -0,0 +1,105 @@
+package br.com.beatrizcarmo.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.dto.UserDto;
+import br.com.beatrizcarmo.dto.mapper.UserMapper;
+import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.service.UserService;
+import br.com.beatrizcarmo.service.impl.UserServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetricsAspectTest {
+
+	@InjectMocks
+	public UserServiceImpl userServiceImpl;
+
+	@Mock
+	public UserRepository userRepository;
+	@Mock
+	public UserMapper userMapper;
+	@Mock
+	public BookAvailabilityLedger availabilityLedger;
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+
+	UserService service;
+
+	@Before
+	public void setUp() {
+		service = proxy(userServiceImpl);
+	}
+
+	@Test
+	public void timeService_shouldTimeTheCallsWithoutException() {
+		User user = new User();
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+		when(userMapper.toDto(user)).thenReturn(new UserDto());
+
+		service.getUserById(userId);
+
+		assertThat(registry.get(MetricsAspect.SERVICE_TIMER).tag("class", "UserServiceImpl")
+				.tag("method", "getUserById").tag("exception", "none").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void timeService_shouldCountTheErrorsByExceptionType() {
+		when(userRepository.findById(userId)).thenReturn(Optional.empty());
+
+		Throwable exception = catchThrowable(() -> service.getUserById(userId));
+
+		assertThat(exception).isInstanceOf(NotFoundException.class);
+		assertThat(registry.get(MetricsAspect.SERVICE_TIMER).tag("exception", "NotFoundException").timer().count())
+				.isEqualTo(1);
+		assertThat(registry.get(MetricsAspect.ERRORS_COUNTER).tag("layer", "service")
+				.tag("exception", "NotFoundException").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void timeRepository_shouldBeNamedAfterTheRepositoryInterface() {
+		UserRepository repository = proxy(mock(UserRepository.class));
+
+		repository.findById(userId);
+
+		assertThat(registry.get(MetricsAspect.REPOSITORY_TIMER).tag("class", "UserRepository")
+				.tag("method", "findById").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void timeMapper_shouldTimeTheConversions() {
+		UserMapper mapper = proxy(new UserMapper());
+		User user = new User("Beatriz", "beatriz", "senha", false);
+		user.setId(userId);
+
+		mapper.toDto(user);
+
+		assertThat(registry.get(MetricsAspect.MAPPER_TIMER).tag("class", "UserMapper").tag("method", "toDto")
+				.timer().count()).isEqualTo(1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(T target) {
+		AspectJProxyFactory factory = new AspectJProxyFactory(target);
+		factory.addAspect(new MetricsAspect(registry));
+		return (T) factory.getProxy();
+	}
+}
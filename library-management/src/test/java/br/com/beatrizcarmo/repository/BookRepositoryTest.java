@@ -0,0 +1,253 @@
+package br.com.beatrizcarmo.repository;
+
+import static br.com.beatrizcarmo.sql.SqlStatementCounter.assertCounts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.Cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.projection.CatalogVersion;
+import br.com.beatrizcarmo.repository.projection.OverdueUserSummary;
+import br.com.beatrizcarmo.repository.projection.PenaltySummary;
+import br.com.beatrizcarmo.sql.SqlStatementCounter;
+
+@DataJpaTest(properties = SqlStatementCounter.PROPERTY)
+@Sql("/h2/BookRepositoryTest.sql")
+@RunWith(SpringRunner.class)
+public class BookRepositoryTest {
+
+	@Autowired
+	BookRepository repository;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	// O cache de segundo nivel sobrevive ao rollback de cada teste; limpa para nao ler dados do teste anterior
+	@Before
+	public void clearSecondLevelCache() {
+		secondLevelCache().evictAll();
+	}
+
+	@Test
+	public void findByIdGreaterThan_shouldReturnTheNextPageOrderedById() {
+		List<Book> firstPage = repository.findAllByOrderByIdAsc(PageRequest.of(0, 2));
+		List<Book> secondPage = repository.findByIdGreaterThanOrderByIdAsc(firstPage.get(1).getId(),
+				PageRequest.of(0, 2));
+
+		assertThat(firstPage).extracting(Book::getId).containsExactly(
+				UUID.fromString("00000000-0000-0000-0000-000000000001"),
+				UUID.fromString("00000000-0000-0000-0000-000000000002"));
+		assertThat(secondPage).extracting(Book::getId)
+				.containsExactly(UUID.fromString("00000000-0000-0000-0000-000000000003"));
+	}
+
+	@Test
+	public void findPageAfterName_shouldUseTheIdToBreakTies() {
+		List<Book> firstPage = repository.findFirstPageOrderByName(PageRequest.of(0, 2));
+		Book last = firstPage.get(1);
+
+		List<Book> secondPage = repository.findPageAfterName(last.getName(), last.getId(), PageRequest.of(0, 2));
+
+		assertThat(firstPage).extracting(Book::getName).containsExactly("Capitaes da Areia", "Dom Casmurro");
+		assertThat(secondPage).extracting(Book::getId)
+				.containsExactly(UUID.fromString("00000000-0000-0000-0000-000000000003"));
+	}
+
+	@Test
+	public void findPageAfterName_shouldLeaveTheBooksWithoutNameToTheirOwnQueries() {
+		Library library = entityManager.find(Library.class, UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07"));
+		Book withoutName = new Book();
+		withoutName.setLibrary(library);
+		Book otherWithoutName = new Book();
+		otherWithoutName.setLibrary(library);
+		entityManager.persist(withoutName);
+		entityManager.persistAndFlush(otherWithoutName);
+
+		List<Book> firstPage = repository.findFirstPageOrderByName(PageRequest.of(0, 10));
+		List<Book> afterLastName = repository.findPageAfterName("Dom Casmurro",
+				UUID.fromString("00000000-0000-0000-0000-000000000003"), PageRequest.of(0, 10));
+		List<Book> namelessPage = repository.findFirstPageWithoutName(PageRequest.of(0, 10));
+		List<Book> afterNullName = repository.findPageAfterNullName(namelessPage.get(0).getId(), PageRequest.of(0, 10));
+
+		assertThat(firstPage).extracting(Book::getName).containsExactly("Capitaes da Areia", "Dom Casmurro",
+				"Dom Casmurro");
+		assertThat(afterLastName).isEmpty();
+		assertThat(namelessPage).extracting(Book::getName).containsExactly(null, null);
+		assertThat(afterNullName).containsExactly(namelessPage.get(1));
+	}
+
+	@Test
+	public void streamAll_shouldReturnTheWholeCatalog() {
+		try (Stream<Book> books = repository.streamAll()) {
+			assertThat(books.map(Book::getId).collect(Collectors.toList())).hasSize(3);
+		}
+	}
+
+	@Test
+	public void findCatalogVersion_shouldChangeWhenABookIsSaved() {
+		CatalogVersion before = repository.findCatalogVersion();
+		Book book = repository.findById(UUID.fromString("00000000-0000-0000-0000-000000000001")).orElseThrow();
+
+		book.setName("Dom Casmurro, 2a edicao");
+		repository.saveAndFlush(book);
+		CatalogVersion after = repository.findCatalogVersion();
+
+		assertThat(before.getBooks()).isEqualTo(3);
+		assertThat(after.getBooks()).isEqualTo(3);
+		// Os livros do script foram inseridos sem passar pelo JPA
+		assertThat(before.getLastUpdate()).isNull();
+		assertThat(after.getLastUpdate()).isNotNull();
+	}
+
+	@Test
+	public void releaseLoansByIdIn_shouldClearTheUserAndTheDevolutionDateOfTheLockedBooks() {
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		UUID bookId = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+		List<Book> locked = repository.lockByUserIdIn(List.of(userId));
+		int released = repository.releaseLoansByIdIn(List.of(bookId));
+
+		Book book = repository.findById(bookId).get();
+		assertThat(locked).extracting(Book::getId).containsExactly(bookId);
+		assertThat(released).isEqualTo(1);
+		assertThat(book.getUser()).isNull();
+		assertThat(book.getDevolutionDate()).isNull();
+		assertThat(book.getIsBorrowed()).isFalse();
+	}
+
+	@Test
+	public void repriceByYearEdition_shouldDiscountOnePercentPerYearSinceTheEdition() {
+		UUID editedBookId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+		UUID bookWithoutEditionId = UUID.fromString("00000000-0000-0000-0000-000000000002");
+		UUID bookOnATieId = UUID.fromString("00000000-0000-0000-0000-000000000003");
+		entityManager.find(Book.class, editedBookId).setYearEdition(LocalDate.of(2010, 5, 1));
+		Book bookOnATie = entityManager.find(Book.class, bookOnATieId);
+		bookOnATie.setCost(0.5f);
+		bookOnATie.setYearEdition(LocalDate.of(2019, 1, 1));
+		entityManager.flush();
+
+		int repriced = repository.repriceByYearEdition(List.of(editedBookId, bookWithoutEditionId, bookOnATieId),
+				2020);
+
+		assertThat(repriced).isEqualTo(2);
+		assertThat(repository.findById(editedBookId).get().getCost()).isEqualTo(9f);
+		assertThat(repository.findById(bookWithoutEditionId).get().getCost()).isEqualTo(20f);
+		// 0,50 - 1% = 0,495, arredondado para cima como no MathCalculator
+		assertThat(repository.findById(bookOnATieId).get().getCost()).isEqualTo(0.5f);
+	}
+
+	@Test
+	public void findIdsByLibraryIdAfterOrderByIdAsc_shouldReturnTheNextChunkOfTheLibrary() {
+		UUID libraryId = UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07");
+
+		List<UUID> firstChunk = repository.findIdsByLibraryIdOrderByIdAsc(libraryId, PageRequest.of(0, 2));
+		List<UUID> secondChunk = repository.findIdsByLibraryIdAfterOrderByIdAsc(libraryId, firstChunk.get(1),
+				PageRequest.of(0, 2));
+
+		assertThat(firstChunk).containsExactly(UUID.fromString("00000000-0000-0000-0000-000000000001"),
+				UUID.fromString("00000000-0000-0000-0000-000000000002"));
+		assertThat(secondChunk).containsExactly(UUID.fromString("00000000-0000-0000-0000-000000000003"));
+	}
+
+	@Test
+	public void findById_shouldKeepTheBookInTheSecondLevelCache() {
+		UUID bookId = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+		Book book = repository.findById(bookId).get();
+
+		// A biblioteca e o usuário são LAZY: só entram no cache quando forem lidos
+		Cache cache = secondLevelCache();
+		assertThat(cache.contains(Book.class, bookId)).isTrue();
+		assertThat(cache.contains(Library.class, book.getLibrary().getId())).isFalse();
+		assertThat(cache.contains(User.class, book.getUser().getId())).isFalse();
+
+		book.getUser().getName();
+		assertThat(cache.contains(User.class, book.getUser().getId())).isTrue();
+	}
+
+	@Test
+	public void findAllByOrderByIdAsc_shouldReadTheAssociationIdsWithoutNewSelects() {
+		SqlStatementCounter.reset();
+
+		List<Book> books = repository.findAllByOrderByIdAsc(PageRequest.of(0, 10));
+
+		assertThat(books).extracting(book -> book.getLibrary().getId()).hasSize(3);
+		assertThat(books).filteredOn(book -> book.getUser() != null).extracting(book -> book.getUser().getId())
+				.containsExactly(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64"));
+		assertCounts(1, 0, 0, 0);
+	}
+
+	@Test
+	public void saveAll_shouldInsertTheBooksInOneBatch() {
+		Library library = entityManager.find(Library.class, UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07"));
+		List<Book> books = Stream.generate(Book::new).limit(3).collect(Collectors.toList());
+		books.forEach(book -> book.setLibrary(library));
+		SqlStatementCounter.reset();
+
+		repository.saveAll(books);
+		entityManager.flush();
+
+		assertCounts(0, 1, 0, 0);
+	}
+
+	@Test
+	public void summarizePenaltyByUserId_shouldSumTheCostOfTheBooksReturnedAfterTheLimit() {
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		// 9.7f vale 9.6999998...; o custo é arredondado para 970 centavos antes da soma
+		Book book = new Book();
+		book.setName("Quincas Borba");
+		book.setCost(9.7f);
+		book.setIsBorrowed(true);
+		book.setDevolutionDate(LocalDate.of(2020, 1, 1));
+		book.setUser(entityManager.find(User.class, userId));
+		entityManager.persistAndFlush(book);
+
+		PenaltySummary summary = repository.summarizePenaltyByUserId(userId, LocalDate.of(2019, 1, 1));
+
+		assertThat(summary.getNotBorrowedBooks()).isZero();
+		assertThat(summary.getBooksWithoutDevolutionDate()).isZero();
+		assertThat(summary.getBooksWithoutCost()).isZero();
+		assertThat(summary.getLateBooksCostInCents()).isEqualTo(2470L);
+	}
+
+	@Test
+	@Sql({ "/h2/BookRepositoryTest.sql", "/h2/BookRepositoryTest-overdue.sql" })
+	public void findOverdueUsers_shouldGroupTheLateBooksByUser() {
+		List<OverdueUserSummary> result = repository.findOverdueUsers(LocalDate.of(2022, 1, 1), PageRequest.of(0, 10));
+
+		assertThat(result).extracting(OverdueUserSummary::getUserName).containsExactly("Rafael", "Beatriz");
+		assertThat(result.get(1).getLateBooks()).isEqualTo(2);
+		assertThat(result.get(1).getOldestDevolutionDate()).isEqualTo(LocalDate.of(2021, 6, 1));
+	}
+
+	@Test
+	@Sql({ "/h2/BookRepositoryTest.sql", "/h2/BookRepositoryTest-overdue.sql" })
+	public void streamOverdueUsers_shouldIgnoreBooksThatAreNotLate() {
+		try (Stream<OverdueUserSummary> result = repository.streamOverdueUsers(LocalDate.of(2021, 1, 1))) {
+			assertThat(result.map(OverdueUserSummary::getUserName).collect(Collectors.toList()))
+					.containsExactly("Rafael");
+		}
+	}
+
+	private Cache secondLevelCache() {
+		return entityManager.getEntityManager().getEntityManagerFactory().getCache();
+	}
+}
@@ -0,0 +1,73 @@
+package br.com.beatrizcarmo.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import br.com.beatrizcarmo.models.BookRepricingJob;
+import br.com.beatrizcarmo.models.BookRepricingJob.Status;
+
+@DataJpaTest
+@RunWith(SpringRunner.class)
+public class BookRepricingJobRepositoryTest {
+
+	@Autowired
+	BookRepricingJobRepository repository;
+
+	UUID libraryId = UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07");
+	UUID otherLibraryId = UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba08");
+
+	@Test
+	public void existsForLibrary_shouldFindOtherJobsOfTheSameLibraryOrOfTheCatalog() {
+		save(otherLibraryId, 2020, Status.COMPLETED);
+		BookRepricingJob job = save(libraryId, 2020, Status.RUNNING);
+
+		assertThat(repository.existsForLibrary(libraryId, 2020, job.getId())).isFalse();
+
+		save(null, 2020, Status.FAILED);
+
+		assertThat(repository.existsForLibrary(libraryId, 2020, job.getId())).isTrue();
+		assertThat(repository.existsForLibrary(libraryId, 2021, job.getId())).isFalse();
+	}
+
+	@Test
+	public void existsByReferenceYearAndIdNot_shouldFindFailedJobsOfAnyLibrary() {
+		BookRepricingJob job = save(null, 2020, Status.RUNNING);
+
+		assertThat(repository.existsByReferenceYearAndIdNot(2020, job.getId())).isFalse();
+
+		save(libraryId, 2020, Status.FAILED);
+
+		assertThat(repository.existsByReferenceYearAndIdNot(2020, job.getId())).isTrue();
+		assertThat(repository.existsByReferenceYearAndIdNot(2021, job.getId())).isFalse();
+	}
+
+	@Test
+	public void save_withAStaleVersion_shouldFail() {
+		BookRepricingJob job = save(libraryId, 2020, Status.FAILED);
+		BookRepricingJob stale = new BookRepricingJob(libraryId, 2020);
+		stale.setId(job.getId());
+		stale.setVersion(job.getVersion());
+		job.setStatus(Status.RUNNING);
+		repository.saveAndFlush(job);
+
+		stale.setStatus(Status.RUNNING);
+		Throwable exception = catchThrowable(() -> repository.saveAndFlush(stale));
+
+		assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+	}
+
+	private BookRepricingJob save(UUID libraryId, int year, Status status) {
+		BookRepricingJob job = new BookRepricingJob(libraryId, year);
+		job.setStatus(status);
+		return repository.saveAndFlush(job);
+	}
+}
@@ -1,23 +1,31 @@
 package br.com.beatrizcarmo.repository;
 
+import static br.com.beatrizcarmo.sql.SqlStatementCounter.assertCounts;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.UUID;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.sql.SqlStatementCounter;
 
-@DataJpaTest
+@DataJpaTest(properties = SqlStatementCounter.PROPERTY)
 @Sql("/h2/LibraryRepositoryTest.sql")
 @RunWith(SpringRunner.class)
 public class LibraryRepositoryTest {
 	
 	@Autowired
 	LibraryRepository repository;
+
+	@Autowired
+	TestEntityManager entityManager;
 	
 	//Exemplo
 	@Test
@@ -33,4 +41,25 @@ public class LibraryRepositoryTest {
 		
 		assertThat(numberOfLibrariesAfter).isEqualTo(numberOfLibrariesBefore + 1);
 	}
+
+	@Test
+	public void saveAndFlush_shouldOnlyInsertTheLibrary() {
+		SqlStatementCounter.reset();
+
+		repository.saveAndFlush(new Library("Teste 3"));
+
+		assertCounts(0, 1, 0, 0);
+	}
+
+	@Test
+	public void findById_shouldUseOneSelect() {
+		// Sem o cache de segundo nível, que pode ter a biblioteca de outro teste do mesmo contexto
+		entityManager.getEntityManager().getEntityManagerFactory().getCache().evictAll();
+		SqlStatementCounter.reset();
+
+		Library library = repository.findById(UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07")).get();
+
+		assertThat(library.getName()).isEqualTo("Teste");
+		assertCounts(1, 0, 0, 0);
+	}
 }
@@ -0,0 +1,184 @@
+package br.com.beatrizcarmo.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.projection.CatalogVersion;
+
+public class BookSearchIndexTest {
+
+	ByteBuffersDirectory directory;
+	BookSearchIndex index;
+
+	Book domCasmurro;
+	Book memorias;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = new ByteBuffersDirectory();
+		index = new BookSearchIndex(directory);
+
+		domCasmurro = book("b5cf7620-d659-4b66-b7c7-25d45021ee61", "Dom Casmurro", "Machado de Assis",
+				"Bentinho e Capitu");
+		memorias = book("b5cf7620-d659-4b66-b7c7-25d45021ee62", "Memórias Póstumas de Brás Cubas",
+				"Machado de Assis", "Um defunto autor");
+
+		index.index(List.of(domCasmurro, memorias));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		index.close();
+	}
+
+	@Test
+	public void search_shouldFindBooksByAuthor() {
+		List<UUID> result = index.search(null, null, "machado", 10);
+
+		assertThat(result).containsExactlyInAnyOrder(domCasmurro.getId(), memorias.getId());
+	}
+
+	@Test
+	public void search_shouldCombineNameAndAuthor() {
+		List<UUID> result = index.search(null, "casmurro", "assis", 10);
+
+		assertThat(result).containsExactly(domCasmurro.getId());
+	}
+
+	@Test
+	public void search_shouldSearchTheDescriptionInFreeText() {
+		List<UUID> result = index.search("capitu", null, null, 10);
+
+		assertThat(result).containsExactly(domCasmurro.getId());
+	}
+
+	@Test
+	public void index_shouldReplaceTheBookWhenItIsUpdated() {
+		domCasmurro.setName("Quincas Borba");
+
+		index.index(domCasmurro);
+
+		assertThat(index.search(null, "casmurro", null, 10)).isEmpty();
+		assertThat(index.search(null, "quincas", null, 10)).containsExactly(domCasmurro.getId());
+	}
+
+	@Test
+	public void delete_shouldRemoveTheBook() {
+		index.delete(memorias.getId());
+
+		assertThat(index.search(null, null, "machado", 10)).containsExactly(domCasmurro.getId());
+	}
+
+	@Test
+	public void index_shouldOnlyWriteToDiskOnTheCommit() throws IOException {
+		// Já aparece na busca, mas ainda não foi gravado
+		assertThat(DirectoryReader.indexExists(directory)).isFalse();
+
+		index.commit();
+
+		try (DirectoryReader reader = DirectoryReader.open(directory)) {
+			assertThat(reader.numDocs()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void rebuildIfOutOfSync_shouldOnlyRebuildWhenTheCatalogVersionChanged() {
+		BookRepository bookRepository = mock(BookRepository.class);
+		ReflectionTestUtils.setField(index, "bookRepository", bookRepository);
+		ReflectionTestUtils.setField(index, "transactionManager", mock(PlatformTransactionManager.class));
+		when(bookRepository.findCatalogVersion()).thenReturn(catalogVersion(1L, LocalDateTime.of(2020, 1, 1, 10, 0)));
+		when(bookRepository.streamAll()).thenAnswer(invocation -> Stream.of(domCasmurro));
+
+		index.rebuildIfOutOfSync();
+		index.rebuildIfOutOfSync();
+
+		verify(bookRepository, times(1)).streamAll();
+		assertThat(index.search(null, null, "machado", 10)).containsExactly(domCasmurro.getId());
+
+		// Mesma quantidade de livros, mas um deles foi alterado enquanto o índice não estava aberto
+		when(bookRepository.findCatalogVersion()).thenReturn(catalogVersion(1L, LocalDateTime.of(2020, 1, 1, 11, 0)));
+
+		index.rebuildIfOutOfSync();
+
+		verify(bookRepository, times(2)).streamAll();
+	}
+
+	@Test
+	public void start_shouldRebuildBeforeTheWebServerAndStopShouldCommitTheCurrentCatalogVersion() {
+		BookRepository bookRepository = mock(BookRepository.class);
+		ReflectionTestUtils.setField(index, "bookRepository", bookRepository);
+		ReflectionTestUtils.setField(index, "transactionManager", mock(PlatformTransactionManager.class));
+		when(bookRepository.findCatalogVersion()).thenReturn(catalogVersion(2L, LocalDateTime.of(2020, 1, 1, 10, 0)));
+		when(bookRepository.streamAll()).thenReturn(Stream.of(domCasmurro));
+
+		index.start();
+
+		assertThat(index.isRunning()).isTrue();
+		assertThat(index.getPhase()).isLessThan(Integer.MAX_VALUE - 1);
+		assertThat(index.search(null, null, "machado", 10)).containsExactly(domCasmurro.getId());
+
+		index.stop();
+
+		assertThat(index.isRunning()).isFalse();
+		assertThat(index.committedVersion()).containsEntry("catalogBooks", "2")
+				.containsEntry("catalogLastUpdate", "2020-01-01T10:00");
+	}
+
+	@Test
+	public void commit_shouldClearTheCatalogVersion() throws IOException {
+		index.rebuild(Stream.of(domCasmurro), Map.of("catalogBooks", "1"));
+		assertThat(index.committedVersion()).containsEntry("catalogBooks", "1");
+
+		index.index(memorias);
+		index.commit();
+
+		// Se o processo cair depois deste commit, a próxima subida reconstrói o índice
+		assertThat(index.committedVersion()).isEmpty();
+	}
+
+	@Test
+	public void search_withoutTermsShouldReturnEmpty() {
+		assertThat(index.search(null, "", null, 10)).isEmpty();
+	}
+
+	private CatalogVersion catalogVersion(Long books, LocalDateTime lastUpdate) {
+		return new CatalogVersion() {
+			public Long getBooks() {
+				return books;
+			}
+
+			public LocalDateTime getLastUpdate() {
+				return lastUpdate;
+			}
+		};
+	}
+
+	private Book book(String id, String name, String author, String description) {
+		Book book = new Book();
+		book.setId(UUID.fromString(id));
+		book.setName(name);
+		book.setAuthor(author);
+		book.setDescription(description);
+		return book;
+	}
+}
@@ -0,0 +1,182 @@
+package br.com.beatrizcarmo.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.BookImportReportDto;
+import br.com.beatrizcarmo.dto.mapper.BookMapper;
+import br.com.beatrizcarmo.exceptions.WrongParametersException;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.search.BookSearchIndex;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookImportServiceImplTest {
+
+	@InjectMocks
+	public BookImportServiceImpl service;
+
+	@Mock
+	public BookRepository bookRepository;
+	@Mock
+	public BookMapper bookMapper;
+	@Mock
+	public BookSearchIndex bookSearchIndex;
+	@Mock
+	public BookAvailabilityLedger availabilityLedger;
+	@Mock
+	public CatalogSnapshot catalogSnapshot;
+	@Mock
+	public UserLoanCounter userLoanCounter;
+	@Mock
+	public PlatformTransactionManager transactionManager;
+	@Mock
+	public EntityManager entityManager;
+	@Spy
+	public ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+	// Única biblioteca que o toEntities encontra
+	String libraryId = "0cbce1c3-fd6f-41c5-9f89-f515942bba07";
+
+	List<BookDto> mappedDtos = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		when(bookMapper.toEntities(anyList())).thenAnswer(invocation -> {
+			List<BookDto> dtos = invocation.getArgument(0);
+			mappedDtos.addAll(dtos);
+			List<Book> books = new ArrayList<>();
+			for (BookDto dto : dtos) {
+				Book book = new Book();
+				book.setName(dto.name);
+				if (libraryId.equals(dto.idLibrary))
+					book.setLibrary(new Library(UUID.fromString(libraryId), "Biblioteca", "biblioteca", "senha", "Rua", 0));
+				books.add(book);
+			}
+			return books;
+		});
+		when(bookRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+	}
+
+	@Test
+	public void importCsv_shouldImportTheValidRowsAndReportTheInvalidOnes() throws IOException {
+		String csv = "name,author,cost,yearEdition,isBorrowed\n"
+				+ "Dom Casmurro,Machado de Assis,10.5,1899-01-01,false\n"
+				+ ",Sem Nome,1,,\n"
+				+ "Iracema,Jose de Alencar,caro,,\n"
+				+ "\"O Cortiço, edição 2\",Aluisio Azevedo,,,\n";
+
+		BookImportReportDto report = service.importCsv(stream(csv));
+
+		assertThat(mappedDtos).extracting(dto -> dto.name).containsExactly("Dom Casmurro", "O Cortiço, edição 2");
+		assertThat(mappedDtos.get(0).cost).isEqualTo(10.5f);
+		assertThat(report.imported).isEqualTo(2);
+		assertThat(report.rejected).isEqualTo(2);
+		assertThat(report.errors).extracting(error -> error.row).containsExactly(3L, 4L);
+		assertThat(report.errors.get(0).message).isEqualTo("Nome e autor são obrigatórios");
+	}
+
+	@Test
+	public void importCsv_shouldReturnAExceptionForUnknownColumn() {
+		Throwable exception = catchThrowable(() -> service.importCsv(stream("name,isbn\nLivro,123\n")));
+
+		assertThat(exception).isInstanceOf(WrongParametersException.class);
+	}
+
+	@Test
+	public void importCsv_shouldSaveInChunks() throws IOException {
+		StringBuilder csv = new StringBuilder("name,author\n");
+		for (int i = 0; i < 1200; i++) {
+			csv.append("Livro ").append(i).append(",Autor\n");
+		}
+
+		BookImportReportDto report = service.importCsv(stream(csv.toString()));
+
+		verify(bookRepository, times(3)).saveAll(anyList());
+		verify(bookSearchIndex, times(3)).index(anyList());
+		assertThat(report.imported).isEqualTo(1200);
+	}
+
+	@Test
+	public void importNdjson_shouldIgnoreTheIdAndReportInvalidJson() throws IOException {
+		String ndjson = "{\"id\":\"b5cf7620-d659-4b66-b7c7-25d45021ee62\",\"name\":\"Livro\",\"author\":\"Rafael\"}\n"
+				+ "\n"
+				+ "{\"name\":\n"
+				+ "{\"name\":\"Livro 2\",\"author\":\"Rafael\",\"idUser\":\"abc\"}\n";
+
+		BookImportReportDto report = service.importNdjson(stream(ndjson));
+
+		assertThat(mappedDtos).hasSize(1);
+		assertThat(mappedDtos.get(0).id).isNull();
+		assertThat(report.imported).isEqualTo(1);
+		assertThat(report.errors).extracting(error -> error.row).containsExactly(3L, 4L);
+	}
+
+	@Test
+	public void importNdjson_shouldReportTheRowsOfAChunkThatFailed() throws IOException {
+		when(bookRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("fk"));
+
+		BookImportReportDto report = service.importNdjson(stream("{\"name\":\"Livro\",\"author\":\"Rafael\"}\n"));
+
+		verify(bookSearchIndex, never()).index(anyList());
+		assertThat(report.imported).isZero();
+		assertThat(report.rejected).isEqualTo(1);
+		assertThat(report.errors.get(0).message).startsWith("Erro ao gravar o lote");
+	}
+
+	@Test
+	public void importCsv_shouldRejectOnlyTheRowsWithAnUnknownLibrary() throws IOException {
+		String unknownLibraryId = "0cbce1c3-fd6f-41c5-9f89-f515942bba08";
+		String csv = "name,author,idLibrary\n"
+				+ "Dom Casmurro,Machado de Assis," + libraryId + "\n"
+				+ "Iracema,Jose de Alencar," + unknownLibraryId + "\n"
+				+ "O Cortiço,Aluisio Azevedo,\n";
+
+		BookImportReportDto report = service.importCsv(stream(csv));
+
+		verify(bookMapper, times(1)).toEntities(anyList());
+		verify(bookRepository).saveAll(argThat(books -> ((List<Book>) books).size() == 2));
+		assertThat(report.imported).isEqualTo(2);
+		assertThat(report.rejected).isEqualTo(1);
+		assertThat(report.errors).extracting(error -> error.row).containsExactly(3L);
+		assertThat(report.errors.get(0).message).isEqualTo("Biblioteca não encontrada: " + unknownLibraryId);
+	}
+
+	private InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
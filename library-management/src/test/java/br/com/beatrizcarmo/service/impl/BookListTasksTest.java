@@ -0,0 +1,64 @@
+package br.com.beatrizcarmo.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.beatrizcarmo.models.Book;
+
+public class BookListTasksTest {
+
+	ForkJoinPool pool = new ForkJoinPool(4);
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void collect_shouldThrowTheExceptionOfTheFirstChunkThatFailed() {
+		List<Book> books = books(10 * BookListTasks.CHUNK_SIZE);
+		// O último pedaço falha na hora; o primeiro só depois de percorrer quase todo o pedaço
+		books.get(books.size() - 1).setName("sem autor");
+		books.get(BookListTasks.CHUNK_SIZE - 1).setName("sem autor");
+
+		for (int i = 0; i < 20; i++) {
+			Throwable exception = catchThrowable(() -> BookListTasks.collect(pool, books, (book, part) -> {
+				if (book.getName().equals("sem autor"))
+					throw new IllegalArgumentException("Livro " + books.indexOf(book) + " sem autor");
+				part.add(book.getName());
+			}));
+
+			// A original, sem a cópia que o fork/join cria quando a exceção vem de outra thread
+			assertThat(exception).isExactlyInstanceOf(IllegalArgumentException.class)
+					.hasMessage("Livro " + (BookListTasks.CHUNK_SIZE - 1) + " sem autor").hasNoCause();
+		}
+	}
+
+	@Test
+	public void sum_shouldThrowTheOriginalException() {
+		List<Book> books = books(3 * BookListTasks.CHUNK_SIZE);
+		books.get(2 * BookListTasks.CHUNK_SIZE).setCost(null);
+
+		Throwable exception = catchThrowable(() -> BookListTasks.sum(pool, books, book -> book.getCost()));
+
+		assertThat(exception).isExactlyInstanceOf(NullPointerException.class).hasNoCause();
+	}
+
+	private List<Book> books(int size) {
+		List<Book> books = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Book book = new Book();
+			book.setName("Livro " + i);
+			book.setCost(1f);
+			books.add(book);
+		}
+		return books;
+	}
+}
@@ -0,0 +1,259 @@
+package br.com.beatrizcarmo.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.dto.BookRepricingJobDto;
+import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.models.BookRepricingJob;
+import br.com.beatrizcarmo.models.BookRepricingJob.Status;
+import br.com.beatrizcarmo.models.Library;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.BookRepricingJobRepository;
+import br.com.beatrizcarmo.repository.LibraryRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BookRepricingServiceImplTest {
+
+	@InjectMocks
+	public BookRepricingServiceImpl service;
+
+	@Mock
+	public BookRepository bookRepository;
+	@Mock
+	public BookRepricingJobRepository jobRepository;
+	@Mock
+	public LibraryRepository libraryRepository;
+	@Mock
+	public CatalogSnapshot catalogSnapshot;
+	@Mock
+	public BookDtoCache bookDtoCache;
+	@Mock
+	public PlatformTransactionManager transactionManager;
+	@Spy
+	public TaskExecutor taskExecutor = new SyncTaskExecutor();
+
+	UUID libraryId = UUID.fromString("0cbce1c3-fd6f-41c5-9f89-f515942bba07");
+	UUID bookId1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+	UUID bookId2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+	UUID bookId3 = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+	// Faz o papel da tabela de execuções
+	Map<UUID, BookRepricingJob> jobs = new HashMap<>();
+
+	@Test
+	public void startRepricing_shouldRepriceTheCatalogInChunksAndKeepTheCheckpoint() {
+		storeJobs();
+		when(bookRepository.findIdsOrderByIdAsc(any())).thenReturn(List.of(bookId1, bookId2));
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId2), any())).thenReturn(List.of(bookId3));
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId3), any())).thenReturn(List.of());
+		when(bookRepository.repriceByYearEdition(any(), anyInt())).thenReturn(2, 0);
+
+		BookRepricingJobDto started = service.startRepricing(null);
+		BookRepricingJobDto finished = service.getRepricingJob(UUID.fromString(started.id));
+
+		int year = LocalDate.now().getYear();
+		verify(bookRepository).repriceByYearEdition(List.of(bookId1, bookId2), year);
+		verify(bookRepository).repriceByYearEdition(List.of(bookId3), year);
+		verify(bookDtoCache).invalidate(bookId3);
+		assertThat(started.status).isEqualTo("RUNNING");
+		assertThat(finished.status).isEqualTo("COMPLETED");
+		assertThat(finished.idLibrary).isNull();
+		assertThat(finished.referenceYear).isEqualTo(year);
+		assertThat(finished.lastBookId).isEqualTo(bookId3.toString());
+		assertThat(finished.processedBooks).isEqualTo(3);
+		assertThat(finished.repricedBooks).isEqualTo(2);
+		assertThat(finished.finishedAt).isNotNull();
+	}
+
+	@Test
+	public void startRepricing_withLibrary_shouldOnlyReadTheBooksOfTheLibrary() {
+		storeJobs();
+		when(libraryRepository.lockById(libraryId)).thenReturn(Optional.of(new Library()));
+		when(bookRepository.findIdsByLibraryIdOrderByIdAsc(any(), any())).thenReturn(List.of(bookId1));
+		when(bookRepository.findIdsByLibraryIdAfterOrderByIdAsc(any(), any(), any())).thenReturn(List.of());
+
+		BookRepricingJobDto started = service.startRepricing(libraryId);
+		BookRepricingJobDto finished = service.getRepricingJob(UUID.fromString(started.id));
+
+		verify(bookRepository).findIdsByLibraryIdOrderByIdAsc(any(), any());
+		verify(bookRepository).findIdsByLibraryIdAfterOrderByIdAsc(any(), any(), any());
+		verify(bookRepository, never()).findIdsOrderByIdAsc(any());
+		assertThat(finished.status).isEqualTo("COMPLETED");
+		assertThat(finished.idLibrary).isEqualTo(libraryId.toString());
+		assertThat(finished.processedBooks).isEqualTo(1);
+	}
+
+	@Test
+	public void startRepricing_withUnknownLibrary_shouldThrowANotFoundException() {
+		when(libraryRepository.lockById(libraryId)).thenReturn(Optional.empty());
+
+		Throwable exception = catchThrowable(() -> service.startRepricing(libraryId));
+
+		assertThat(exception).isInstanceOf(NotFoundException.class);
+		verify(jobRepository, never()).save(any());
+	}
+
+	@Test
+	public void startRepricing_withAJobOfTheSameYear_shouldThrowAnException() {
+		storeJobs();
+		int year = LocalDate.now().getYear();
+		when(libraryRepository.lockById(libraryId)).thenReturn(Optional.of(new Library()));
+		// Uma execução do catálogo inteiro já alcançou os livros da biblioteca
+		when(jobRepository.existsForLibrary(eq(libraryId), eq(year), any())).thenReturn(true);
+
+		Throwable exception = catchThrowable(() -> service.startRepricing(libraryId));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Já existe uma reprecificação deste ano para estes livros");
+		verify(transactionManager).rollback(any());
+		verify(taskExecutor, never()).execute(any());
+	}
+
+	@Test
+	public void startRepricing_shouldLockEveryLibraryForTheWholeCatalog() {
+		storeJobs();
+		when(bookRepository.findIdsOrderByIdAsc(any())).thenReturn(List.of());
+
+		service.startRepricing(null);
+
+		verify(libraryRepository).lockAllOrderById();
+		verify(jobRepository).existsByReferenceYearAndIdNot(eq(LocalDate.now().getYear()), any());
+	}
+
+	@Test
+	public void resumeRepricing_shouldContinueFromTheCheckpointWithTheSameYear() {
+		storeJobs();
+		BookRepricingJob job = job(Status.FAILED, bookId2, 2);
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId2), any())).thenReturn(List.of(bookId3));
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId3), any())).thenReturn(List.of());
+		when(bookRepository.repriceByYearEdition(any(), anyInt())).thenReturn(1);
+
+		service.resumeRepricing(job.getId());
+		BookRepricingJobDto finished = service.getRepricingJob(job.getId());
+
+		verify(bookRepository).repriceByYearEdition(List.of(bookId3), 2020);
+		verify(bookRepository, never()).findIdsOrderByIdAsc(any());
+		assertThat(finished.status).isEqualTo("COMPLETED");
+		assertThat(finished.error).isNull();
+		assertThat(finished.processedBooks).isEqualTo(3);
+		assertThat(finished.repricedBooks).isEqualTo(3);
+	}
+
+	@Test
+	public void resumeRepricing_withAnotherJobOfTheSameYear_shouldThrowAnException() {
+		storeJobs();
+		BookRepricingJob job = job(Status.FAILED, bookId1, 1);
+		job.setLibraryId(libraryId);
+		when(libraryRepository.lockById(libraryId)).thenReturn(Optional.of(new Library()));
+		// Uma execução do catálogo inteiro rodou depois que a da biblioteca falhou
+		when(jobRepository.existsForLibrary(libraryId, 2020, job.getId())).thenReturn(true);
+
+		Throwable exception = catchThrowable(() -> service.resumeRepricing(job.getId()));
+		Throwable retry = catchThrowable(() -> service.resumeRepricing(job.getId()));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Já existe uma reprecificação deste ano para estes livros");
+		// A recusa não deixa a execução marcada como em andamento nesta instância
+		assertThat(retry).hasMessage("Já existe uma reprecificação deste ano para estes livros");
+		verify(taskExecutor, never()).execute(any());
+	}
+
+	@Test
+	public void resumeRepricing_whenAnotherInstanceTakesTheJob_shouldStopWithoutMarkingItAsFailed() {
+		storeJobs();
+		BookRepricingJob job = job(Status.FAILED, bookId1, 1);
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId1), any())).thenReturn(List.of(bookId2));
+		when(bookRepository.repriceByYearEdition(any(), anyInt()))
+				.thenThrow(new ObjectOptimisticLockingFailureException(BookRepricingJob.class, job.getId()));
+
+		service.resumeRepricing(job.getId());
+
+		assertThat(service.getRepricingJob(job.getId()).status).isEqualTo("RUNNING");
+		verify(bookDtoCache, never()).invalidate(any());
+	}
+
+	@Test
+	public void resumeRepricing_withACompletedJob_shouldThrowAnException() {
+		findJobs();
+		BookRepricingJob job = job(Status.COMPLETED, bookId3, 3);
+
+		Throwable exception = catchThrowable(() -> service.resumeRepricing(job.getId()));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("A reprecificação já foi concluída");
+	}
+
+	@Test
+	public void startRepricing_whenAChunkFails_shouldKeepTheLastCheckpoint() {
+		storeJobs();
+		when(bookRepository.findIdsOrderByIdAsc(any())).thenReturn(List.of(bookId1));
+		when(bookRepository.findIdsAfterOrderByIdAsc(eq(bookId1), any())).thenReturn(List.of(bookId2));
+		when(bookRepository.repriceByYearEdition(any(), anyInt())).thenReturn(1)
+				.thenThrow(new QueryTimeoutException("Tempo esgotado"));
+
+		BookRepricingJobDto started = service.startRepricing(null);
+		BookRepricingJobDto failed = service.getRepricingJob(UUID.fromString(started.id));
+
+		assertThat(failed.status).isEqualTo("FAILED");
+		assertThat(failed.error).isEqualTo("Tempo esgotado");
+		assertThat(failed.lastBookId).isEqualTo(bookId1.toString());
+		assertThat(failed.processedBooks).isEqualTo(1);
+		verify(bookDtoCache, never()).invalidate(bookId2);
+	}
+
+	private void storeJobs() {
+		when(jobRepository.save(any())).thenAnswer(invocation -> {
+			BookRepricingJob job = invocation.getArgument(0);
+			if (job.getId() == null)
+				job.setId(UUID.randomUUID());
+			jobs.put(job.getId(), job);
+			return job;
+		});
+		findJobs();
+	}
+
+	private void findJobs() {
+		when(jobRepository.findById(any()))
+				.thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.getArgument(0))));
+	}
+
+	private BookRepricingJob job(Status status, UUID lastBookId, long processedBooks) {
+		BookRepricingJob job = new BookRepricingJob(null, 2020);
+		job.setId(UUID.randomUUID());
+		job.setStatus(status);
+		job.setLastBookId(lastBookId);
+		job.setProcessedBooks(processedBooks);
+		job.setRepricedBooks(processedBooks);
+		job.setError("Tempo esgotado");
+		jobs.put(job.getId(), job);
+		return job;
+	}
+}
@@ -2,14 +2,28 @@ package br.com.beatrizcarmo.service.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,15 +32,38 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
 import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.UserLoanCountDto;
+import br.com.beatrizcarmo.dto.BookPageDto;
+import br.com.beatrizcarmo.dto.CatalogStatsDto;
+import br.com.beatrizcarmo.dto.OverdueUserDto;
 import br.com.beatrizcarmo.dto.mapper.BookMapper;
 import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.exceptions.WrongParametersException;
 import br.com.beatrizcarmo.models.Book;
 import br.com.beatrizcarmo.models.User;
 import br.com.beatrizcarmo.repository.BookRepository;
 import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.repository.projection.OverdueUserSummary;
+import br.com.beatrizcarmo.repository.projection.PenaltySummary;
+import br.com.beatrizcarmo.search.BookSearchIndex;
 
 @RunWith(MockitoJUnitRunner.class)
 public class BookServiceImplTest {
@@ -40,6 +77,24 @@ public class BookServiceImplTest {
 	public BookMapper bookMapper;
 	@Mock
 	public UserRepository userRepository;
+	@Mock
+	public EntityManager entityManager;
+	@Mock
+	public BookSearchIndex bookSearchIndex;
+	@Mock
+	public PlatformTransactionManager transactionManager;
+	@Spy
+	public ObjectMapper objectMapper = new ObjectMapper();
+	@Spy
+	public BookAvailabilityLedger availabilityLedger = new BookAvailabilityLedger();
+	@Spy
+	public CatalogSnapshot catalogSnapshot = new CatalogSnapshot();
+	@Spy
+	public UserLoanCounter userLoanCounter = new UserLoanCounter();
+	@Spy
+	public TaskExecutor taskExecutor = new SyncTaskExecutor();
+	@Spy
+	public BookDtoCache bookDtoCache = new BookDtoCache(new ObjectMapper().registerModule(new JavaTimeModule()), 100);
 
 	@Captor
 	ArgumentCaptor<Book> bookCaptor;
@@ -537,6 +592,17 @@ public class BookServiceImplTest {
 
 	}
 
+	@Test
+	public void verifyIfBookIsBorrowed_shouldAnswerFromTheLedger() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		availabilityLedger.put(bookId, true);
+
+		boolean result = service.verifyIfBookIsBorrowed(bookId);
+
+		assertThat(result).isTrue();
+		verify(bookRepository, never()).findById(bookId);
+	}
+
 	@Test
 	public void verifyIfBookIsBorrowed_shouldNotFound() {
 
@@ -595,6 +661,7 @@ public class BookServiceImplTest {
 		// Assert
 		verify(bookRepository).delete(book);
 		verify(bookRepository).findById(bookId);
+		verify(bookSearchIndex).delete(bookId);
 
 	}
 
@@ -627,6 +694,8 @@ public class BookServiceImplTest {
 		service.lendBookToUser(userId, bookId);
 
 		verify(bookRepository).save(book);
+		assertThat(book.getIsBorrowed()).isTrue();
+		assertThat(book.getUser()).isEqualTo(user);
 
 	}
 
@@ -667,6 +736,116 @@ public class BookServiceImplTest {
 
 	}
 
+	@Test
+	public void lendBookToUser_shouldReadTheBookAgainAfterAConcurrentLend() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		book.setIsBorrowed(false);
+		book.setId(bookId);
+		user.setIsPunished(false);
+		user.setId(userId);
+		Book lentByAnotherUser = new Book();
+		lentByAnotherUser.setId(bookId);
+		lentByAnotherUser.setIsBorrowed(true);
+
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book))
+				.thenReturn(Optional.of(lentByAnotherUser));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+		when(bookRepository.save(book)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, bookId));
+
+		Throwable exception = catchThrowable(() -> service.lendBookToUser(userId, bookId));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Livro já foi emprestado");
+		verify(bookRepository, times(2)).findById(bookId);
+	}
+
+	@Test
+	public void lendBookToUser_shouldGiveUpAfterTheLastAttempt() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		user.setIsPunished(false);
+		user.setId(userId);
+
+		when(bookRepository.findById(bookId)).thenAnswer(invocation -> {
+			Book available = new Book();
+			available.setId(bookId);
+			available.setIsBorrowed(false);
+			return Optional.of(available);
+		});
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+		when(bookRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, bookId));
+
+		Throwable exception = catchThrowable(() -> service.lendBookToUser(userId, bookId));
+
+		assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+		verify(bookRepository, times(3)).save(any());
+		verify(bookDtoCache, never()).invalidate(bookId);
+	}
+
+	@Test
+	public void lendBookToUser_shouldRefuseABookAlreadyReservedInTheLedger() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		availabilityLedger.tryReserve(bookId);
+
+		Throwable exception = catchThrowable(() -> service.lendBookToUser(userId, bookId));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Livro já foi emprestado");
+		verify(bookRepository, never()).findById(bookId);
+	}
+
+	@Test
+	public void lendBookToUserAsync_shouldConfirmTheLendInTheLedger() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		book.setIsBorrowed(false);
+		book.setId(bookId);
+		user.setIsPunished(false);
+		user.setId(userId);
+
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		service.lendBookToUserAsync(userId, bookId).join();
+
+		assertThat(availabilityLedger.getAvailability(bookId)).isEqualTo(BookAvailabilityLedger.Availability.BORROWED);
+		verify(bookRepository).save(book);
+	}
+
+	@Test
+	public void lendBookToUserAsync_shouldReconcileTheLedgerWhenTheDatabaseRefuses() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		availabilityLedger.put(bookId, false);
+		book.setIsBorrowed(true);
+		book.setId(bookId);
+		user.setIsPunished(false);
+		user.setId(userId);
+
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+		when(bookRepository.findIsBorrowedById(bookId)).thenReturn(Optional.of(true));
+
+		Throwable exception = catchThrowable(() -> service.lendBookToUserAsync(userId, bookId).join());
+
+		assertThat(exception).hasCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(availabilityLedger.getAvailability(bookId)).isEqualTo(BookAvailabilityLedger.Availability.BORROWED);
+	}
+
+	@Test
+	public void lendBookToUserAsync_shouldRefuseAPunishedUserWithoutReservingTheBook() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		availabilityLedger.put(bookId, false);
+		availabilityLedger.setPunished(userId, true);
+
+		Throwable exception = catchThrowable(() -> service.lendBookToUserAsync(userId, bookId));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("O usuário não está autorizado para pegar novos livros");
+		assertThat(availabilityLedger.getAvailability(bookId)).isEqualTo(BookAvailabilityLedger.Availability.AVAILABLE);
+	}
+
 	// 2
 
 	@Test
@@ -719,6 +898,10 @@ public class BookServiceImplTest {
 		BookDto bookDto = new BookDto();
 		bookDto.author = "Rafael";
 		bookDto.name = "Livro";
+		book.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62"));
+		book.setIsBorrowed(false);
+		when(bookMapper.toEntity(bookDto)).thenReturn(book);
+		when(bookRepository.save(book)).thenReturn(book);
 
 		service.insertBook(bookDto);
 
@@ -776,6 +959,394 @@ public class BookServiceImplTest {
 		
 	}
 
+	@Test
+	public void getBooksPage_shouldReturnTokenWhenThereIsANextPage() {
+		Book book2 = new Book();
+		book.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62"));
+		book2.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63"));
+		List<Book> books = new ArrayList<>();
+		books.add(book);
+		books.add(book2);
+		when(bookRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(books);
+
+		BookPageDto result = service.getBooks(null, 1, null);
+
+		verify(bookMapper).toDto(books.subList(0, 1));
+		assertThat(result.nextToken).isNotNull();
+	}
+
+	@Test
+	public void getBooksPage_shouldUseTheTokenToFetchTheNextPage() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		book.setId(bookId);
+		List<Book> books = new ArrayList<>();
+		books.add(book);
+		books.add(new Book());
+		when(bookRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(books);
+		String token = service.getBooks(null, 1, null).nextToken;
+
+		BookPageDto result = service.getBooks(token, 1, null);
+
+		verify(bookRepository).findByIdGreaterThanOrderByIdAsc(eq(bookId), any(Pageable.class));
+		assertThat(result.nextToken).isNull();
+	}
+
+	@Test
+	public void getBooksPage_shouldUseTheNameAsCursorWhenSortedByName() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		book.setId(bookId);
+		book.setName("Livro | com barra");
+		List<Book> books = new ArrayList<>();
+		books.add(book);
+		books.add(new Book());
+		when(bookRepository.findFirstPageOrderByName(any(Pageable.class))).thenReturn(books);
+		String token = service.getBooks(null, 1, "name").nextToken;
+
+		service.getBooks(token, 1, null);
+
+		verify(bookRepository).findPageAfterName(eq("Livro | com barra"), eq(bookId), any(Pageable.class));
+	}
+
+	@Test
+	public void getBooksPage_shouldContinueWithTheBooksWithoutNameWhenTheNamesEnd() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID otherBookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		book.setId(bookId);
+		book.setName("Livro");
+		Book withoutName = new Book();
+		withoutName.setId(otherBookId);
+		when(bookRepository.findFirstPageOrderByName(any(Pageable.class))).thenReturn(List.of(book));
+		when(bookRepository.findFirstPageWithoutName(PageRequest.of(0, 2))).thenReturn(List.of(withoutName, new Book()));
+		BookPageDto firstPage = service.getBooks(null, 2, "name");
+
+		service.getBooks(firstPage.nextToken, 2, null);
+
+		assertThat(firstPage.nextToken).isNotNull();
+		verify(bookRepository).findPageAfterNullName(eq(otherBookId), any(Pageable.class));
+		verify(bookRepository, never()).findPageAfterName(any(), any(), any(Pageable.class));
+	}
+
+	@Test
+	public void exportBooks_shouldWriteOneLinePerBook() throws IOException {
+		Book book2 = new Book();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		when(bookRepository.streamAll()).thenReturn(Stream.of(book, book2));
+		doAnswer(invocation -> {
+			JsonGenerator generator = invocation.getArgument(1);
+			generator.writeStartObject();
+			generator.writeStringField("name", "Livro");
+			generator.writeEndObject();
+			return null;
+		}).when(bookMapper).writeTo(any(Book.class), any(JsonGenerator.class));
+
+		service.exportBooks(out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertThat(lines).hasSize(2);
+		assertThat(lines[0]).contains("\"name\":\"Livro\"");
+		verify(entityManager).detach(book);
+		verify(entityManager).detach(book2);
+	}
+
+	@Test
+	public void getOverdueUsers_shouldReturnAPageOfUsers() {
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		List<OverdueUserSummary> summaries = new ArrayList<>();
+		summaries.add(overdueSummary(userId, LocalDate.now().minusDays(10)));
+		when(bookRepository.findOverdueUsers(LocalDate.now(), PageRequest.of(1, 10))).thenReturn(summaries);
+
+		List<OverdueUserDto> result = service.getOverdueUsers(1, 10, null);
+
+		assertThat(result).hasSize(1);
+		assertThat(result.get(0).idUser).isEqualTo(userId.toString());
+		assertThat(result.get(0).daysOverdue).isEqualTo(10);
+	}
+
+	@Test
+	public void getOverdueUsers_shouldKeepOnlyTheMostOverdueUsers() {
+		UUID userId1 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		UUID userId2 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee65");
+		UUID userId3 = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee66");
+		when(bookRepository.streamOverdueUsers(LocalDate.now())).thenReturn(Stream.of(
+				overdueSummary(userId1, LocalDate.now().minusDays(5)),
+				overdueSummary(userId2, LocalDate.now().minusDays(30)),
+				overdueSummary(userId3, LocalDate.now().minusDays(15))));
+
+		List<OverdueUserDto> result = service.getOverdueUsers(null, null, 2);
+
+		assertThat(result).extracting(dto -> dto.idUser).containsExactly(userId2.toString(), userId3.toString());
+	}
+
+	@Test
+	public void getOverdueUsers_shouldReturnAExceptionForInvalidTop() {
+		Throwable exception = catchThrowable(() -> service.getOverdueUsers(null, null, 0));
+
+		assertThat(exception).isInstanceOf(WrongParametersException.class);
+	}
+
+	@Test
+	public void getCatalogStats_shouldFollowTheInsertsAndLends() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		BookDto bookDto = new BookDto();
+		bookDto.author = "Rafael";
+		bookDto.name = "Livro";
+		book.setId(bookId);
+		book.setCost(30f);
+		book.setIsBorrowed(false);
+		user.setId(userId);
+		user.setIsPunished(false);
+		when(bookMapper.toEntity(bookDto)).thenReturn(book);
+		when(bookRepository.save(book)).thenReturn(book);
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		service.insertBook(bookDto);
+		service.lendBookToUser(userId, bookId);
+		CatalogStatsDto stats = service.getCatalogStats(null, null);
+
+		assertThat(stats.books).isEqualTo(1);
+		assertThat(stats.borrowedBooks).isEqualTo(1);
+		assertThat(stats.booksWithoutCost).isZero();
+		assertThat(stats.totalCost).isEqualTo(30.0);
+		assertThat(stats.maxCost).isEqualTo(30f);
+		assertThat(stats.booksByAuthor).isNull();
+		assertThat(stats.totalCostByPublisher).isNull();
+	}
+
+	@Test
+	public void getCatalogStats_shouldFilterByAuthorAndPublisher() {
+		BookDto bookDto = new BookDto();
+		bookDto.author = "Machado de Assis";
+		bookDto.name = "Dom Casmurro";
+		book.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62"));
+		book.setAuthor("Machado de Assis");
+		book.setPublisher("Garnier");
+		book.setCost(30f);
+		when(bookMapper.toEntity(bookDto)).thenReturn(book);
+		when(bookRepository.save(book)).thenReturn(book);
+
+		service.insertBook(bookDto);
+		CatalogStatsDto stats = service.getCatalogStats("Machado de Assis", "Garnier");
+		CatalogStatsDto otherStats = service.getCatalogStats("Jorge Amado", "Record");
+
+		assertThat(stats.booksByAuthor).isEqualTo(1);
+		assertThat(stats.totalCostByPublisher).isEqualTo(30.0);
+		assertThat(otherStats.booksByAuthor).isZero();
+		assertThat(otherStats.totalCostByPublisher).isZero();
+	}
+
+	@Test
+	public void getLoanCounts_shouldFollowTheLendsAndReleases() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		UUID otherUserId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		book.setId(bookId);
+		book.setIsBorrowed(false);
+		user.setId(userId);
+		user.setIsPunished(false);
+		userLoanCounter.increment(userId);
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		service.lendBookToUser(userId, bookId);
+		List<UserLoanCountDto> counts = service.getLoanCounts(List.of(userId, otherUserId, userId));
+
+		assertThat(counts).extracting(count -> count.idUser).containsExactly(userId.toString(),
+				otherUserId.toString());
+		assertThat(counts).extracting(count -> count.loans).containsExactly(2L, 0L);
+
+		Book otherBook = new Book();
+		otherBook.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee61"));
+		when(bookRepository.lockByUserIdIn(Set.of(userId))).thenReturn(List.of(book, otherBook));
+		when(bookRepository.releaseLoansByIdIn(List.of(bookId, otherBook.getId()))).thenReturn(2);
+		service.removeUserLoans(userId);
+
+		assertThat(service.getLoanCounts(List.of(userId)).get(0).loans).isZero();
+	}
+
+	@Test
+	public void lendBookToUser_shouldMoveTheLoanFromThePreviousUser() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		UUID previousUserId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		User previousUser = new User();
+		previousUser.setId(previousUserId);
+		// Devolvido, mas ainda associado a quem o pegou da última vez
+		book.setId(bookId);
+		book.setIsBorrowed(false);
+		book.setUser(previousUser);
+		user.setId(userId);
+		user.setIsPunished(false);
+		userLoanCounter.increment(previousUserId);
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		service.lendBookToUser(userId, bookId);
+
+		assertThat(userLoanCounter.get(userId)).isEqualTo(1);
+		assertThat(userLoanCounter.get(previousUserId)).isZero();
+	}
+
+	@Test
+	public void lendBookToUser_toThePreviousUser_shouldNotCountTheBookTwice() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63");
+		book.setId(bookId);
+		book.setIsBorrowed(false);
+		book.setUser(user);
+		user.setId(userId);
+		user.setIsPunished(false);
+		userLoanCounter.increment(userId);
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+		service.lendBookToUser(userId, bookId);
+
+		assertThat(userLoanCounter.get(userId)).isEqualTo(1);
+	}
+
+	@Test
+	public void getLoanCounts_shouldReturnExceptionForEmptyList() {
+		Throwable exception = catchThrowable(() -> service.getLoanCounts(new ArrayList<>()));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Nenhum usuário foi informado");
+	}
+
+	@Test
+	public void getUsersResponsibleForBorrowedParallel_shouldKeepTheOrderOfTheSequentialVersion() {
+		List<Book> books = manyBooks(50_000);
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		try {
+			assertThat(service.getUsersResponsibleForBorrowedParallel(books, pool))
+					.containsExactlyElementsOf(service.getUsersResponsibleForBorrowed(books));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void getBooksSameAuthorParallel_shouldKeepTheOrderOfTheSequentialVersion() {
+		List<Book> books = manyBooks(50_000);
+
+		List<BookDto> result = service.getBooksSameAuthorParallel(books, "autor 3");
+		List<BookDto> expected = service.getBooksSameAuthor(books, "autor 3");
+
+		assertThat(result).hasSize(5000);
+		assertThat(result).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	public void calculateTotalCostOfBooksParallel_shouldReturnTheTotalCost() {
+		// Custos com meio real: as somas parciais são exatas e o total não depende do agrupamento
+		List<Book> books = manyBooks(50_000);
+
+		Double result = service.calculateTotalCostOfBooksParallel(books);
+
+		assertThat(result).isEqualTo(service.calculateTotalCostOfBooks(books));
+	}
+
+	@Test
+	public void calculateTotalCostOfBooksParallel_shouldReturnExceptionForBookWithouPrice() {
+		List<Book> books = manyBooks(50_000);
+		books.get(30_000).setCost(null);
+
+		Throwable exception = catchThrowable(() -> service.calculateTotalCostOfBooksParallel(books));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Livro cadastrado sem preço");
+	}
+
+	@Test
+	public void getUsersResponsibleForBorrowedParallel_shouldFailLikeTheSequentialVersion() {
+		List<Book> books = manyBooks(50_000);
+		books.get(30_000).setIsBorrowed(null);
+
+		Throwable sequential = catchThrowable(() -> service.getUsersResponsibleForBorrowed(books));
+		Throwable parallel = catchThrowable(() -> service.getUsersResponsibleForBorrowedParallel(books));
+
+		assertThat(parallel).isExactlyInstanceOf(sequential.getClass()).hasMessage(sequential.getMessage());
+	}
+
+	// Um a cada três livros emprestado, para usuários e autores que se repetem
+	private List<Book> manyBooks(int size) {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 7; i++)
+			users.add(new User("Usuário " + i, "usuario" + i, "123", false));
+
+		List<Book> books = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Book book = new Book();
+			book.setName("Livro " + i);
+			book.setAuthor("Autor " + (i % 10));
+			book.setCost(i % 100 + 0.5f);
+			book.setIsBorrowed(i % 3 == 0);
+			book.setUser(i % 3 == 0 ? users.get(i % 7) : null);
+			books.add(book);
+		}
+		return books;
+	}
+
+	private OverdueUserSummary overdueSummary(UUID userId, LocalDate oldestDevolutionDate) {
+		return new OverdueUserSummary() {
+			public UUID getUserId() {
+				return userId;
+			}
+
+			public String getUserName() {
+				return "Rafael";
+			}
+
+			public Long getLateBooks() {
+				return 1L;
+			}
+
+			public LocalDate getOldestDevolutionDate() {
+				return oldestDevolutionDate;
+			}
+		};
+	}
+
+	@Test
+	public void searchBooks_shouldKeepTheOrderOfTheIndex() {
+		Book book2 = new Book();
+		book.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62"));
+		book2.setId(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee63"));
+		List<UUID> ids = new ArrayList<>();
+		ids.add(book2.getId());
+		ids.add(book.getId());
+		List<Book> books = new ArrayList<>();
+		books.add(book);
+		books.add(book2);
+		when(bookSearchIndex.search("machado", null, null, 20)).thenReturn(ids);
+		when(bookRepository.findAllById(ids)).thenReturn(books);
+
+		service.searchBooks("machado", null, null, null);
+
+		verify(bookMapper).toDto(List.of(book2, book));
+	}
+
+	@Test
+	public void getBooksPage_shouldReturnAExceptionForInvalidToken() {
+		Throwable exception = catchThrowable(() -> service.getBooks("token-invalido", 10, null));
+
+		assertThat(exception).isInstanceOf(WrongParametersException.class);
+	}
+
+	@Test
+	public void getBooksPage_shouldReturnAExceptionForInvalidSort() {
+		Throwable exception = catchThrowable(() -> service.getBooks(null, 10, "cost"));
+
+		assertThat(exception).isInstanceOf(WrongParametersException.class);
+	}
+
+	@Test
+	public void getBooksPage_shouldReturnAExceptionForInvalidSize() {
+		Throwable exception = catchThrowable(() -> service.getBooks(null, 0, null));
+
+		assertThat(exception).isInstanceOf(WrongParametersException.class);
+	}
+
 	
 //5
 	@Test
@@ -790,6 +1361,41 @@ public class BookServiceImplTest {
 		assertThat(result).isNull();
 		
 	}
+	@Test
+	public void getBookById_shouldReadTheSecondCallFromTheCache() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		BookDto dto = new BookDto();
+		dto.id = bookId.toString();
+		dto.name = "Livro";
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+		when(bookMapper.toDto(book)).thenReturn(dto);
+
+		BookDto first = service.getBookById(bookId);
+		first.name = "Alterado";
+		BookDto second = service.getBookById(bookId);
+
+		verify(bookRepository, times(1)).findById(bookId);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.name).isEqualTo("Livro");
+	}
+
+	@Test
+	public void getBookById_shouldReadTheBookAgainAfterAnUpdate() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		book.setId(bookId);
+		BookDto newBookDto = new BookDto();
+		newBookDto.author = "Rafael";
+		newBookDto.name = "Livro";
+		when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+
+		service.getBookById(bookId);
+		service.updateBook(newBookDto, bookId);
+		service.getBookById(bookId);
+
+		verify(bookDtoCache).invalidate(bookId);
+		verify(bookMapper, times(2)).toDto(book);
+	}
+
 	@Test
 	public void getBookById_shouldReturnAExceptionForEmptyOptional() {
 		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
@@ -876,18 +1482,18 @@ public class BookServiceImplTest {
 	@Test
 	public void removeUserLoans_shouldRemoveBookFromTheUser() {
 		
-		List<Book> books = new ArrayList<>();
 		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
-		book.setUser(user);
-		books.add(book);
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		book.setId(bookId);
 		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.lockByUserIdIn(Set.of(userId))).thenReturn(List.of(book));
+		when(bookRepository.releaseLoansByIdIn(List.of(bookId))).thenReturn(1);
 		
 		service.removeUserLoans(userId);
 		
-		verify(bookRepository).save(book);
-		assertThat(book.getUser()).isNull();
-		assertThat(book.getDevolutionDate()).isNull();
+		// Só os livros travados são liberados no banco e nos caches
+		verify(bookRepository).releaseLoansByIdIn(List.of(bookId));
+		verify(bookDtoCache).invalidateAfterCommit(List.of(bookId));
 		
 		
 	}
@@ -895,29 +1501,58 @@ public class BookServiceImplTest {
 	@Test
 	public void removeUserLoans_shouldReturnExceptionBecauseThereIs2UsersAndBooks() {
 		
-		List<Book> books = new ArrayList<>();
 		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
-		book.setUser(null);
-		books.add(book);
 		when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.lockByUserIdIn(Set.of(userId))).thenReturn(List.of());
 		
 		Throwable exception = catchThrowable(()-> service.removeUserLoans(userId));
 		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Não há nenhum livro emprestado para esse usuário");
 		
 		
 	}
+
+	@Test
+	public void removeUsersLoans_shouldReleaseTheLoansOfAllUsers() {
+		List<UUID> userIds = new ArrayList<>();
+		userIds.add(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64"));
+		userIds.add(UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee65"));
+		userLoanCounter.increment(userIds.get(0));
+		userLoanCounter.increment(userIds.get(0));
+		userLoanCounter.increment(userIds.get(1));
+		List<Book> books = new ArrayList<>();
+		for (UUID userId : List.of(userIds.get(0), userIds.get(0), userIds.get(1))) {
+			User owner = new User();
+			owner.setId(userId);
+			Book lent = new Book();
+			lent.setId(UUID.randomUUID());
+			lent.setUser(owner);
+			books.add(lent);
+		}
+		List<UUID> bookIds = books.stream().map(Book::getId).collect(Collectors.toList());
+		when(bookRepository.lockByUserIdIn(Set.copyOf(userIds))).thenReturn(books);
+		when(bookRepository.releaseLoansByIdIn(bookIds)).thenReturn(3);
+
+		int result = service.removeUsersLoans(userIds);
+
+		assertThat(result).isEqualTo(3);
+		verify(availabilityLedger).releaseAfterCommit(bookIds);
+		assertThat(userLoanCounter.get(userIds.get(0))).isZero();
+		assertThat(userLoanCounter.get(userIds.get(1))).isZero();
+	}
+
+	@Test
+	public void removeUsersLoans_shouldReturnExceptionForEmptyList() {
+		Throwable exception = catchThrowable(() -> service.removeUsersLoans(new ArrayList<>()));
+
+		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("Nenhum usuário foi informado");
+	}
 	
 	//8
 	
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForDevolutionDateNull() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(true);
-		books.add(book);
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.summarizePenaltyByUserId(any(), any())).thenReturn(penaltySummary(0, 1, 0, null));
 		Throwable exception = catchThrowable(()->service.calculatePenaltyAfterSixMonths(user));
 		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("O livro está associado ao usuário, mas não tem data de devolução");
 		
@@ -926,12 +1561,8 @@ public class BookServiceImplTest {
 	}
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForIsBorrowedNull() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(null);
-		books.add(book);
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.summarizePenaltyByUserId(any(), any())).thenReturn(penaltySummary(1, 1, 0, null));
 		Throwable exception = catchThrowable(()->service.calculatePenaltyAfterSixMonths(user));
 		assertThat(exception).isInstanceOf(IllegalArgumentException.class).hasMessage("O livro está associado ao usuário, mas não está emprestado");
 		
@@ -939,16 +1570,10 @@ public class BookServiceImplTest {
 	
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForIsBorrowedFalseWithTwoUsers() {
-		List<Book> books = new ArrayList<>();
-		Book book2 = new Book();
-		User user2 = new User();
+		UUID userId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee64");
+		user.setId(userId);
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(false);
-		book2.setUser(user2);
-		books.add(book);
-		books.add(book2);
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.summarizePenaltyByUserId(eq(userId), any())).thenReturn(penaltySummary(1, 0, 0, null));
 		
 		Throwable exception = catchThrowable(()->service.calculatePenaltyAfterSixMonths(user));
 		
@@ -957,14 +1582,8 @@ public class BookServiceImplTest {
 	}
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForCostNull() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(true);
-		book.setDevolutionDate(LocalDate.of(2022, 1, 1));
-		book.setCost(null);
-		books.add(book);
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.summarizePenaltyByUserId(any(), any())).thenReturn(penaltySummary(0, 0, 1, null));
 		
 		Throwable exception = catchThrowable(()->service.calculatePenaltyAfterSixMonths(user));
 		
@@ -973,44 +1592,58 @@ public class BookServiceImplTest {
 	}
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForDateBefore() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(true);
-		book.setDevolutionDate(LocalDate.of(2020, 1, 1));
-		book.setCost(10f);
-		books.add(book);
-		when(bookRepository.findAll()).thenReturn(books);
-		service.calculatePenaltyAfterSixMonths(user);
+		when(bookRepository.summarizePenaltyByUserId(any(), any())).thenReturn(penaltySummary(0, 0, 0, 0L));
+		float result = service.calculatePenaltyAfterSixMonths(user);
+		assertThat(result).isZero();
 		
 	}
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnPenaltyOf20() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(true);
-		book.setUser(user);
-		book.setIsBorrowed(true);
-		book.setDevolutionDate(LocalDate.of(2025, 1, 1));
-		book.setCost(10f);
-		books.add(book);
-		when(bookRepository.findAll()).thenReturn(books);
+		when(bookRepository.summarizePenaltyByUserId(any(), eq(LocalDate.now().plusMonths(6))))
+				.thenReturn(penaltySummary(0, 0, 0, 1000L));
 		float result = service.calculatePenaltyAfterSixMonths(user);
 		assertThat(result).isEqualTo(20f);
 		
+	}
+	@Test
+	public void calculatePenaltyAfterSixMonths_shouldRoundTheDoublePenaltyToCents() {
+		user.setIsPunished(true);
+		// R$ 9,70 + R$ 0,13
+		when(bookRepository.summarizePenaltyByUserId(any(), any())).thenReturn(penaltySummary(0, 0, 0, 983L));
+		float result = service.calculatePenaltyAfterSixMonths(user);
+		assertThat(result).isEqualTo(19.66f);
+
 	}
 	@Test
 	public void calculatePenaltyAfterSixMonths_shouldReturnExceptionForUserNotPunished() {
-		List<Book> books = new ArrayList<>();
 		user.setIsPunished(false);
-		book.setUser(user);
-		book.setIsBorrowed(true);
-		book.setDevolutionDate(LocalDate.of(2025, 1, 1));
-		book.setCost(10f);
-		books.add(book);
 		Float result = service.calculatePenaltyAfterSixMonths(user);
 		assertThat(result).isZero();
 		
 	}
+
+	private PenaltySummary penaltySummary(long notBorrowedBooks, long booksWithoutDevolutionDate,
+			long booksWithoutCost, Long lateBooksCostInCents) {
+		return new PenaltySummary() {
+			public Long getNotBorrowedBooks() {
+				return notBorrowedBooks;
+			}
+
+			public Long getBooksWithoutDevolutionDate() {
+				return booksWithoutDevolutionDate;
+			}
+
+			public Long getBooksWithoutCost() {
+				return booksWithoutCost;
+			}
+
+			public Long getLateBooksCostInCents() {
+				return lateBooksCostInCents;
+			}
+		};
+	}
 	
 	}
 
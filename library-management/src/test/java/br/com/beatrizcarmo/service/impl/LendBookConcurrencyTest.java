@@ -0,0 +1,150 @@
+package br.com.beatrizcarmo.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.User;
+import br.com.beatrizcarmo.repository.BookRepository;
+import br.com.beatrizcarmo.repository.UserRepository;
+import br.com.beatrizcarmo.service.BookService;
+
+// Vários balcões emprestando os mesmos livros ao mesmo tempo: cada livro só pode ser emprestado uma vez.
+// A reserva no BookAvailabilityLedger é desligada, senão só um balcão chegaria ao banco por livro e o @Version e
+// o retry do empréstimo nunca seriam exercitados. A vazão com 1, 2, 4 e 8 threads é medida pelo
+// LendScalingBenchmark, que faz a mesma conferência a cada rodada
+@SpringBootTest(properties = {
+		"library.search.index-path=${java.io.tmpdir}/library-management/index-${random.uuid}",
+		// Com todos os balcões gravando no banco os conflitos de versão são esperados e tratados pelo retry
+		"logging.level.org.hibernate.engine.jdbc.batch.internal.BatchingBatch=off" })
+@AutoConfigureTestDatabase
+@RunWith(SpringRunner.class)
+public class LendBookConcurrencyTest {
+
+	private static final int BOOKS = 200;
+	private static final int THREADS = 8;
+
+	@Autowired
+	BookService service;
+
+	@Autowired
+	BookRepository bookRepository;
+
+	@Autowired
+	UserRepository userRepository;
+
+	@SpyBean
+	BookAvailabilityLedger availabilityLedger;
+
+	@Before
+	public void setUp() {
+		doReturn(true).when(availabilityLedger).tryReserve(any());
+	}
+
+	@After
+	public void tearDown() {
+		bookRepository.deleteAll();
+		userRepository.deleteAll();
+	}
+
+	@Test
+	public void lendBookToUser_shouldNeverLendTheSameBookTwice() throws Exception {
+		List<UUID> bookIds = createBooks();
+		List<UUID> userIds = createUsers(THREADS);
+
+		int lends = lendConcurrently(bookIds, userIds);
+
+		assertThat(lends).isEqualTo(BOOKS);
+		// Uma única gravação por livro: um empréstimo perdido por cima de outro teria incrementado a versão de novo
+		assertThat(bookRepository.findAll()).allSatisfy(book -> {
+			assertThat(book.getIsBorrowed()).isTrue();
+			assertThat(book.getUser()).isNotNull();
+			assertThat(book.getVersion()).isEqualTo(1);
+		});
+	}
+
+	// Cada thread tenta emprestar todos os livros em uma ordem aleatória e conta quantos conseguiu
+	private int lendConcurrently(List<UUID> bookIds, List<UUID> userIds) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(userIds.size());
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		for (int i = 0; i < userIds.size(); i++) {
+			UUID userId = userIds.get(i);
+			List<UUID> order = new ArrayList<>(bookIds);
+			Collections.shuffle(order, new Random(i));
+
+			results.add(executor.submit(() -> {
+				start.await();
+				int lends = 0;
+				for (UUID bookId : order) {
+					try {
+						service.lendBookToUser(userId, bookId);
+						lends++;
+					} catch (IllegalArgumentException e) {
+						// Outro balcão emprestou antes
+					}
+				}
+				return lends;
+			}));
+		}
+
+		start.countDown();
+		int lends = 0;
+		for (Future<Integer> result : results)
+			lends += result.get();
+
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		return lends;
+	}
+
+	private List<UUID> createBooks() {
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < BOOKS; i++) {
+			Book book = new Book();
+			book.setName("Livro " + i);
+			book.setAuthor("Autor");
+			book.setIsBorrowed(false);
+			books.add(book);
+		}
+
+		List<UUID> ids = new ArrayList<>();
+		bookRepository.saveAll(books).forEach(book -> ids.add(book.getId()));
+		return ids;
+	}
+
+	private List<UUID> createUsers(int count) {
+		List<UUID> ids = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			User user = new User();
+			user.setName("Usuario " + i);
+			user.setIsPunished(false);
+			ids.add(userRepository.save(user).getId());
+		}
+		return ids;
+	}
+}
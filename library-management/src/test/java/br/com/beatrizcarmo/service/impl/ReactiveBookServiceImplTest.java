@@ -0,0 +1,196 @@
+package br.com.beatrizcarmo.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import br.com.beatrizcarmo.cache.BookAvailabilityLedger;
+import br.com.beatrizcarmo.cache.BookDtoCache;
+import br.com.beatrizcarmo.cache.CatalogSnapshot;
+import br.com.beatrizcarmo.cache.UserLoanCounter;
+import br.com.beatrizcarmo.dto.BookDto;
+import br.com.beatrizcarmo.dto.mapper.BookRowMapper;
+import br.com.beatrizcarmo.exceptions.NotFoundException;
+import br.com.beatrizcarmo.exceptions.WrongParametersException;
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.models.BookRow;
+import br.com.beatrizcarmo.repository.ReactiveBookRepository;
+import br.com.beatrizcarmo.search.BookSearchIndex;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveBookServiceImplTest {
+
+	@InjectMocks
+	public ReactiveBookServiceImpl service;
+
+	@Mock
+	public ReactiveBookRepository reactiveBookRepository;
+	@Spy
+	public BookRowMapper bookRowMapper;
+	@Mock
+	public BookDtoCache bookDtoCache;
+	@Mock
+	public BookAvailabilityLedger availabilityLedger;
+	@Mock
+	public CatalogSnapshot catalogSnapshot;
+	@Spy
+	public UserLoanCounter userLoanCounter = new UserLoanCounter();
+	@Mock
+	public BookSearchIndex bookSearchIndex;
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	public EntityManagerFactory entityManagerFactory;
+
+	@Test
+	public void getBooks_shouldStreamTheBooksAsTheyAreRequested() {
+		when(reactiveBookRepository.findAllByOrderByIdAsc()).thenReturn(Flux.just(row("Livro 1"), row("Livro 2")));
+
+		StepVerifier.create(service.getBooks(), 1)
+				.assertNext(dto -> assertThat(dto.name).isEqualTo("Livro 1"))
+				.thenRequest(1)
+				.assertNext(dto -> assertThat(dto.name).isEqualTo("Livro 2"))
+				.verifyComplete();
+	}
+
+	@Test
+	public void getBookById_shouldReturnANotFoundExceptionForAMissingBook() {
+		UUID bookId = UUID.fromString("b5cf7620-d659-4b66-b7c7-25d45021ee62");
+		when(reactiveBookRepository.findById(bookId)).thenReturn(Mono.empty());
+
+		StepVerifier.create(service.getBookById(bookId)).expectError(NotFoundException.class).verify();
+	}
+
+	@Test
+	public void insertBook_shouldGenerateTheIdAndIndexTheBook() {
+		BookDto bookDto = new BookDto();
+		bookDto.name = "Livro";
+		bookDto.author = "Rafael";
+		bookDto.isBorrowed = false;
+		ArgumentCaptor<BookRow> rowCaptor = ArgumentCaptor.forClass(BookRow.class);
+		when(reactiveBookRepository.save(rowCaptor.capture())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		BookDto result = service.insertBook(bookDto).block();
+
+		BookRow saved = rowCaptor.getValue();
+		assertThat(saved.isNew()).isTrue();
+		assertThat(result.id).isEqualTo(saved.getId().toString());
+		verify(availabilityLedger).put(saved.getId(), false);
+		verify(bookSearchIndex).index(any(Book.class));
+	}
+
+	@Test
+	public void insertBook_andDeletBook_withUser_shouldUpdateTheLoansOfTheUser() {
+		UUID userId = UUID.fromString("3b8e4a2c-1d4b-4f7a-9c39-0e5a7b1d2f01");
+		BookDto bookDto = new BookDto();
+		bookDto.name = "Livro";
+		bookDto.author = "Rafael";
+		bookDto.isBorrowed = true;
+		bookDto.idUser = userId.toString();
+		ArgumentCaptor<BookRow> rowCaptor = ArgumentCaptor.forClass(BookRow.class);
+		when(reactiveBookRepository.save(rowCaptor.capture())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		service.insertBook(bookDto).block();
+
+		assertThat(userLoanCounter.get(userId)).isEqualTo(1);
+
+		BookRow saved = rowCaptor.getValue();
+		when(reactiveBookRepository.findById(saved.getId())).thenReturn(Mono.just(saved));
+		when(reactiveBookRepository.delete(saved)).thenReturn(Mono.empty());
+
+		StepVerifier.create(service.deletBook(saved.getId())).verifyComplete();
+
+		assertThat(userLoanCounter.get(userId)).isZero();
+	}
+
+	@Test
+	public void deletBook_whenTheDeleteFails_shouldKeepTheLoansOfTheUser() {
+		UUID userId = UUID.fromString("3b8e4a2c-1d4b-4f7a-9c39-0e5a7b1d2f01");
+		BookRow row = row("Livro");
+		row.setUserId(userId);
+		userLoanCounter.increment(userId);
+		when(reactiveBookRepository.findById(row.getId())).thenReturn(Mono.just(row));
+		when(reactiveBookRepository.delete(row)).thenReturn(Mono.error(new IllegalStateException("Falha no banco")));
+
+		StepVerifier.create(service.deletBook(row.getId())).expectError(IllegalStateException.class).verify();
+
+		assertThat(userLoanCounter.get(userId)).isEqualTo(1);
+		verify(availabilityLedger, never()).remove(any());
+	}
+
+	@Test
+	public void insertBook_shouldReturnNotFoundExceptionBookNameAndAuthorIsEmpty() {
+		BookDto bookDto = new BookDto();
+		bookDto.name = "";
+		bookDto.author = "";
+
+		StepVerifier.create(service.insertBook(bookDto)).expectError(NotFoundException.class).verify();
+		verify(reactiveBookRepository, never()).save(any());
+	}
+
+	@Test
+	public void updateBook_shouldEvictTheBookFromTheCaches() {
+		BookRow row = row("Livro");
+		BookDto newBookDto = new BookDto();
+		newBookDto.name = "Livro novo";
+		newBookDto.author = "Rafael";
+		when(reactiveBookRepository.findById(row.getId())).thenReturn(Mono.just(row));
+		when(reactiveBookRepository.save(row)).thenReturn(Mono.just(row));
+
+		BookDto result = service.updateBook(newBookDto, row.getId()).block();
+
+		assertThat(result.name).isEqualTo("Livro novo");
+		assertThat(row.isNew()).isFalse();
+		verify(bookDtoCache).invalidate(row.getId());
+		verify(entityManagerFactory.getCache()).evict(Book.class, row.getId());
+		verify(bookSearchIndex).index(any(Book.class));
+	}
+
+	@Test
+	public void updateBook_shouldReturnAExceptionOfWrongParameters() {
+		BookDto newBookDto = new BookDto();
+		newBookDto.name = "Livro";
+		newBookDto.author = "";
+
+		StepVerifier.create(service.updateBook(newBookDto, UUID.randomUUID()))
+				.expectError(WrongParametersException.class).verify();
+	}
+
+	@Test
+	public void deletBook_shouldRemoveTheBookFromTheLedgerAndTheIndex() {
+		BookRow row = row("Livro");
+		when(reactiveBookRepository.findById(row.getId())).thenReturn(Mono.just(row));
+		when(reactiveBookRepository.delete(row)).thenReturn(Mono.empty());
+
+		StepVerifier.create(service.deletBook(row.getId())).verifyComplete();
+
+		verify(availabilityLedger).remove(row.getId());
+		verify(bookDtoCache).invalidate(row.getId());
+		verify(bookSearchIndex).delete(row.getId());
+	}
+
+	private BookRow row(String name) {
+		BookRow row = new BookRow();
+		row.setId(UUID.randomUUID());
+		row.setName(name);
+		row.setAuthor("Rafael");
+		row.setVersion(0L);
+		return row;
+	}
+}
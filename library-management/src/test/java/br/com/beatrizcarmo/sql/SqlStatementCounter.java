@@ -0,0 +1,108 @@
+package br.com.beatrizcarmo.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Conta os comandos SQL que o Hibernate prepara, separados por tipo, para os testes afirmarem quantos SELECT,
+// INSERT, UPDATE e DELETE cada chamada faz e pegarem regressões de N+1. Liga com a propriedade PROPERTY no
+// @DataJpaTest ou @SpringBootTest. O Hibernate cria a instância pelo nome da classe, por isso os contadores são
+// estáticos; chame reset() antes da chamada medida.
+// Um lote de batch do JDBC conta uma vez só, que é uma ida ao banco. O que roda fora do Hibernate (scripts do
+// @Sql, JdbcTemplate, R2DBC) não passa por aqui.
+public class SqlStatementCounter implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PROPERTY = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+			+ "br.com.beatrizcarmo.sql.SqlStatementCounter";
+
+	public enum Type {
+		SELECT, INSERT, UPDATE, DELETE, OTHER
+	}
+
+	private static final Map<Type, LongAdder> COUNTS = new EnumMap<>(Type.class);
+	private static final Queue<String> STATEMENTS = new ConcurrentLinkedQueue<>();
+
+	static {
+		for (Type type : Type.values())
+			COUNTS.put(type, new LongAdder());
+	}
+
+	@Override
+	public String inspect(String sql) {
+		COUNTS.get(typeOf(sql)).increment();
+		STATEMENTS.add(sql);
+		return sql;
+	}
+
+	public static void reset() {
+		COUNTS.values().forEach(LongAdder::reset);
+		STATEMENTS.clear();
+	}
+
+	public static long count(Type type) {
+		return COUNTS.get(type).sum();
+	}
+
+	public static void assertSelectCount(long expected) {
+		assertCount(Type.SELECT, expected);
+	}
+
+	public static void assertInsertCount(long expected) {
+		assertCount(Type.INSERT, expected);
+	}
+
+	public static void assertUpdateCount(long expected) {
+		assertCount(Type.UPDATE, expected);
+	}
+
+	public static void assertDeleteCount(long expected) {
+		assertCount(Type.DELETE, expected);
+	}
+
+	// Atalho para a chamada inteira: SELECT, INSERT, UPDATE e DELETE nessa ordem
+	public static void assertCounts(long select, long insert, long update, long delete) {
+		assertSelectCount(select);
+		assertInsertCount(insert);
+		assertUpdateCount(update);
+		assertDeleteCount(delete);
+	}
+
+	private static void assertCount(Type type, long expected) {
+		assertThat(count(type)).as("Número de %s; comandos executados:%n%s", type, String.join("\n", STATEMENTS))
+				.isEqualTo(expected);
+	}
+
+	// O tipo vem da primeira palavra depois dos comentários que o Hibernate coloca na frente do SQL
+	static Type typeOf(String sql) {
+		String statement = sql.trim();
+		while (statement.startsWith("/*") && statement.contains("*/"))
+			statement = statement.substring(statement.indexOf("*/") + 2).trim();
+
+		int end = 0;
+		while (end < statement.length() && Character.isLetter(statement.charAt(end)))
+			end++;
+
+		switch (statement.substring(0, end).toLowerCase(Locale.ROOT)) {
+		case "select":
+		case "with":
+			return Type.SELECT;
+		case "insert":
+			return Type.INSERT;
+		case "update":
+			return Type.UPDATE;
+		case "delete":
+			return Type.DELETE;
+		default:
+			return Type.OTHER;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package br.com.beatrizcarmo.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.beatrizcarmo.models.Book;
+import br.com.beatrizcarmo.utils.BookCostSummary.Filter;
+
+public class BookCostSummaryTest {
+
+	public BookCostSummary summary = new BookCostSummary();
+
+	List<Book> books = List.of(book(10f, true), book(30f, false), book(null, true), book(20f, null));
+
+	@Test
+	public void acceptAll_withAllBooks_shouldAggregateEveryCost() {
+		summary.acceptAll(books, Filter.ALL);
+
+		assertThat(summary.getCount()).isEqualTo(4);
+		assertThat(summary.getBorrowedCount()).isEqualTo(2);
+		assertThat(summary.getCostCount()).isEqualTo(3);
+		assertThat(summary.getSum()).isEqualTo(60.0);
+		assertThat(summary.getMin()).isEqualTo(10f);
+		assertThat(summary.getMax()).isEqualTo(30f);
+		assertThat(summary.getAverage()).isEqualTo(20.0);
+	}
+
+	@Test
+	public void acceptAll_withBorrowedFilter_shouldSkipAvailableBooks() {
+		summary.acceptAll(books, Filter.BORROWED);
+
+		assertThat(summary.getCount()).isEqualTo(2);
+		assertThat(summary.getBorrowedCount()).isEqualTo(2);
+		assertThat(summary.getCostCount()).isEqualTo(1);
+		assertThat(summary.getSum()).isEqualTo(10.0);
+	}
+
+	@Test
+	public void acceptAll_withAvailableFilter_shouldTreatNullAsNotBorrowed() {
+		summary.acceptAll(new LinkedList<>(books), Filter.AVAILABLE);
+
+		assertThat(summary.getCount()).isEqualTo(2);
+		assertThat(summary.getBorrowedCount()).isZero();
+		assertThat(summary.getSum()).isEqualTo(50.0);
+		assertThat(summary.getMin()).isEqualTo(20f);
+	}
+
+	@Test
+	public void reset_shouldLetTheSummaryBeReused() {
+		summary.acceptAll(books, Filter.ALL);
+
+		summary.reset().acceptAll(List.of(book(5f, false)), Filter.ALL);
+
+		assertThat(summary.getCount()).isEqualTo(1);
+		assertThat(summary.getSum()).isEqualTo(5.0);
+		assertThat(summary.getMax()).isEqualTo(5f);
+	}
+
+	@Test
+	public void getAverage_withoutCosts_shouldReturnNaN() {
+		summary.acceptAll(List.of(book(null, false)), Filter.ALL);
+
+		assertThat(summary.getCount()).isEqualTo(1);
+		assertThat(summary.getAverage()).isNaN();
+		assertThat(summary.getMax()).isEqualTo(Float.NEGATIVE_INFINITY);
+	}
+
+	private Book book(Float cost, Boolean isBorrowed) {
+		Book book = new Book();
+		book.setCost(cost);
+		book.setIsBorrowed(isBorrowed);
+		return book;
+	}
+}
@@ -0,0 +1,45 @@
+package br.com.beatrizcarmo.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class CsvReaderTest {
+
+	@Test
+	public void readRecord_shouldSplitTheFields() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader("name,author\r\nDom Casmurro,Machado de Assis\n"));
+
+		assertThat(csv.readRecord()).containsExactly("name", "author");
+		assertThat(csv.readRecord()).containsExactly("Dom Casmurro", "Machado de Assis");
+		assertThat(csv.readRecord()).isNull();
+	}
+
+	@Test
+	public void readRecord_shouldReadQuotedFields() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader("\"Livro, com \"\"vírgula\"\"\",\"duas\nlinhas\",\n"));
+
+		assertThat(csv.readRecord()).containsExactly("Livro, com \"vírgula\"", "duas\nlinhas", "");
+	}
+
+	@Test
+	public void readRecord_shouldReadTheLastRecordWithoutLineBreak() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader("a,b"));
+
+		assertThat(csv.readRecord()).containsExactly("a", "b");
+		assertThat(csv.readRecord()).isNull();
+	}
+
+	@Test
+	public void readRecord_shouldReturnAExceptionForUnclosedQuote() {
+		CsvReader csv = new CsvReader(new StringReader("\"sem fim"));
+
+		Throwable exception = catchThrowable(() -> csv.readRecord());
+
+		assertThat(exception).isInstanceOf(IOException.class).hasMessage("Campo entre aspas não foi fechado");
+	}
+}
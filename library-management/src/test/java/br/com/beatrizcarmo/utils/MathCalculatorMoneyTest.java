@@ -0,0 +1,104 @@
+package br.com.beatrizcarmo.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MathCalculatorMoneyTest {
+
+	@Test
+	public void divide_shouldRoundLikeBigDecimalInEveryMode() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 10_000; i++) {
+			long dividend = random.nextInt(2_000_001) - 1_000_000;
+			long divisor = 1 + random.nextInt(1000);
+			// Força alguns empates exatos
+			if (i % 10 == 0)
+				dividend = (2 * (dividend / 2) + 1) * (divisor % 2 == 0 ? divisor / 2 : 1);
+
+			for (RoundingMode mode : RoundingMode.values()) {
+				if (mode == RoundingMode.UNNECESSARY)
+					continue;
+
+				long expected = BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), 0, mode)
+						.longValueExact();
+				assertThat(MathCalculator.divide(dividend, divisor, mode)).as("%d / %d %s", dividend, divisor, mode)
+						.isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void divide_withUnnecessaryRounding_shouldOnlyAcceptExactResults() {
+		assertThat(MathCalculator.divide(1000, 100, RoundingMode.UNNECESSARY)).isEqualTo(10);
+
+		Throwable exception = catchThrowable(() -> MathCalculator.divide(1001, 100, RoundingMode.UNNECESSARY));
+
+		assertThat(exception).isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	public void percentageOf_shouldRoundToCents() {
+		// 10% de R$ 10,00
+		assertThat(MathCalculator.percentageOf(1000, 1000, RoundingMode.HALF_UP)).isEqualTo(100);
+		// 12,5% de R$ 0,99 = 12,375 centavos
+		assertThat(MathCalculator.percentageOf(99, 1250, RoundingMode.HALF_UP)).isEqualTo(12);
+		assertThat(MathCalculator.percentageOf(99, 1250, RoundingMode.CEILING)).isEqualTo(13);
+		// 1% de R$ 0,50 = 0,5 centavo
+		assertThat(MathCalculator.percentageOf(50, 100, RoundingMode.HALF_UP)).isEqualTo(1);
+		assertThat(MathCalculator.percentageOf(50, 100, RoundingMode.HALF_EVEN)).isZero();
+	}
+
+	@Test
+	public void applyDiscount_shouldRoundOnlyTheFinalPrice() {
+		assertThat(MathCalculator.applyDiscount(1000, 300, RoundingMode.HALF_UP)).isEqualTo(970);
+		// R$ 0,50 - 1% = 49,5 centavos
+		assertThat(MathCalculator.applyDiscount(50, 100, RoundingMode.HALF_UP)).isEqualTo(50);
+		// Desconto negativo vira acréscimo
+		assertThat(MathCalculator.applyDiscount(1000, -200, RoundingMode.HALF_UP)).isEqualTo(1020);
+	}
+
+	@Test
+	public void addMoney_shouldThrowOnOverflow() {
+		assertThat(MathCalculator.addMoney(150, 275)).isEqualTo(425);
+		assertThat(MathCalculator.subtractMoney(150, 275)).isEqualTo(-125);
+
+		assertThat(catchThrowable(() -> MathCalculator.addMoney(Long.MAX_VALUE, 1)))
+				.isInstanceOf(ArithmeticException.class);
+		assertThat(catchThrowable(() -> MathCalculator.percentageOf(Long.MAX_VALUE / 2, 10_000, RoundingMode.HALF_UP)))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	public void toCents_shouldUseTheRoundingMode() {
+		assertThat(MathCalculator.toCents(9.7f, RoundingMode.HALF_UP)).isEqualTo(970);
+		// O float 9.7f vale 9.6999998..., abaixo de 970 centavos
+		assertThat(MathCalculator.toCents(9.7f, RoundingMode.DOWN)).isEqualTo(969);
+		assertThat(MathCalculator.toCents(0.125, RoundingMode.HALF_UP)).isEqualTo(13);
+		assertThat(MathCalculator.toCents(0.125, RoundingMode.HALF_EVEN)).isEqualTo(12);
+		assertThat(MathCalculator.toCents(-0.125, RoundingMode.HALF_UP)).isEqualTo(-13);
+		assertThat(MathCalculator.toCents(-0.125, RoundingMode.HALF_DOWN)).isEqualTo(-12);
+		assertThat(MathCalculator.toCents(-0.125, RoundingMode.FLOOR)).isEqualTo(-13);
+	}
+
+	@Test
+	public void toCents_outOfRange_shouldThrowAnException() {
+		assertThat(catchThrowable(() -> MathCalculator.toCents(1e17, RoundingMode.HALF_UP)))
+				.isInstanceOf(ArithmeticException.class);
+		assertThat(catchThrowable(() -> MathCalculator.toCents(Double.NaN, RoundingMode.HALF_UP)))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	public void centsToFloat_shouldReturnTheClosestFloat() {
+		assertThat(MathCalculator.centsToFloat(970)).isEqualTo(9.7f);
+		assertThat(MathCalculator.centsToDouble(-125)).isEqualTo(-1.25);
+		assertThat(MathCalculator.toBasisPoints(12.5, RoundingMode.HALF_UP)).isEqualTo(1250);
+	}
+}
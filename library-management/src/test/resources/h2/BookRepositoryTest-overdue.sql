@@ -0,0 +1,7 @@
+insert into users (id, name, username, password, is_punished)
+values ('b5cf7620-d659-4b66-b7c7-25d45021ee65', 'Beatriz', 'beatriz', '123', false);
+
+insert into book (id, name, author, cost, is_borrowed, devolution_date, library_id, user_id)
+values ('00000000-0000-0000-0000-000000000004', 'O Cortico', 'Aluisio Azevedo', 12.0, true, '2021-06-01', '0cbce1c3-fd6f-41c5-9f89-f515942bba07', 'b5cf7620-d659-4b66-b7c7-25d45021ee65');
+insert into book (id, name, author, cost, is_borrowed, devolution_date, library_id, user_id)
+values ('00000000-0000-0000-0000-000000000005', 'Iracema', 'Jose de Alencar', 8.0, true, '2021-07-01', '0cbce1c3-fd6f-41c5-9f89-f515942bba07', 'b5cf7620-d659-4b66-b7c7-25d45021ee65');
@@ -0,0 +1,12 @@
+insert into library (id, name, username, password, adress, contact) 
+values ('0cbce1c3-fd6f-41c5-9f89-f515942bba07', 'Teste', 'Teste123', '123', 'Rua do Teste', 9999);
+
+insert into users (id, name, username, password, is_punished)
+values ('b5cf7620-d659-4b66-b7c7-25d45021ee64', 'Rafael', 'rafael', '123', false);
+
+insert into book (id, name, author, cost, is_borrowed, library_id)
+values ('00000000-0000-0000-0000-000000000001', 'Dom Casmurro', 'Machado de Assis', 10.0, false, '0cbce1c3-fd6f-41c5-9f89-f515942bba07');
+insert into book (id, name, author, cost, is_borrowed, library_id)
+values ('00000000-0000-0000-0000-000000000002', 'Capitaes da Areia', 'Jorge Amado', 20.0, false, '0cbce1c3-fd6f-41c5-9f89-f515942bba07');
+insert into book (id, name, author, cost, is_borrowed, devolution_date, library_id, user_id)
+values ('00000000-0000-0000-0000-000000000003', 'Dom Casmurro', 'Machado de Assis', 15.0, true, '2020-01-01', '0cbce1c3-fd6f-41c5-9f89-f515942bba07', 'b5cf7620-d659-4b66-b7c7-25d45021ee64');